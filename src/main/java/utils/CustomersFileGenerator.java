@@ -0,0 +1,214 @@
+package utils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * Writes synthetic Customers files of arbitrary size.
+ *
+ * The output is deterministic for a given record count and every record respects the
+ * facets and rules in src/main/C24/Customers.dod, so the generated files parse and validate
+ * exactly like Customers.xml does - apart from the deliberately invalid records from writeWithRejects.
+ *
+ */
+public class CustomersFileGenerator {
+
+    private static final String[] STREETS = {"Wapping High Street", "Borough High Street", "Kennington Park Lane", "Fleet Street", "Mile End Road"};
+    private static final String[] POSTCODES = {"E1 4TY", "SE1 1XU", "SE1 8GF", "EC4A 2DY", "E1 4NS"};
+    private static final String[] COUNTRIES = {"GB", "US", "DE", "FR"};
+    private static final int VIOLATIONS = 7;
+    private static final int DECIMAL_NUMBERS = 900000;
+    private static final int BASE36_5 = 36 * 36 * 36 * 36 * 36;
+
+    public static File generate(int customers) throws IOException {
+        File file = File.createTempFile("Customers-" + customers + "-", ".xml");
+        file.deleteOnExit();
+        write(file, customers);
+        return file;
+    }
+
+    public static void write(File file, int customers) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 64 * 1024);
+        try {
+            write(writer, customers);
+        } finally {
+            writer.close();
+        }
+    }
+
+    public static void write(Writer writer, int customers) throws IOException {
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        writer.write("<CustomersFile xmlns=\"http://www.c24.biz/io/GettingStarted/Customer\">\n");
+        for(int i=0; i < customers; i++) {
+            writeCustomer(writer, i, 0);
+        }
+        writer.write("</CustomersFile>\n");
+    }
+
+    /**
+     * Writes files Customers files into directory, as an upstream system splitting its feed into small
+     * files might. Consecutive files share overlap customers, so some customers appear in two files.
+     */
+    public static void writeAll(File directory, int files, int customersPerFile, int overlap) throws IOException {
+        directory.mkdirs();
+        for(int file = 0; file < files; file++) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(directory, "Customers-" + file + ".xml")), "UTF-8"));
+            try {
+                writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+                writer.write("<CustomersFile xmlns=\"http://www.c24.biz/io/GettingStarted/Customer\">\n");
+                int first = file * (customersPerFile - overlap);
+                for(int i = first; i < first + customersPerFile; i++) {
+                    writeCustomer(writer, i, 0);
+                }
+                writer.write("</CustomersFile>\n");
+            } finally {
+                writer.close();
+            }
+        }
+    }
+
+    public static File generate(int customers, int revision) throws IOException {
+        File file = File.createTempFile("Customers-" + customers + "-r" + revision + "-", ".xml");
+        file.deleteOnExit();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 64 * 1024);
+        try {
+            write(writer, customers, revision);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    /**
+     * Writes a later snapshot of the file written by write(writer, customers), as a daily feed might look:
+     * 1% of the customers have a new telephone number, 0.1% have been removed and 0.1% added at the end.
+     * Each revision changes a different set of customers.
+     */
+    public static void write(Writer writer, int customers, int revision) throws IOException {
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        writer.write("<CustomersFile xmlns=\"http://www.c24.biz/io/GettingStarted/Customer\">\n");
+        for(int i=0; i < customers; i++) {
+            if(i % 1000 != (revision + 500) % 1000) {
+                writeCustomer(writer, i, i % 100 == revision % 100? revision : 0);
+            }
+        }
+        for(int i=customers; i < customers + Math.max(1, customers / 1000); i++) {
+            writeCustomer(writer, i, 0);
+        }
+        writer.write("</CustomersFile>\n");
+    }
+
+    public static File generateWithRejects(int customers, int rejectPercent) throws IOException {
+        File file = File.createTempFile("Customers-" + customers + "-" + rejectPercent + "pc-rejects-", ".xml");
+        file.deleteOnExit();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 64 * 1024);
+        try {
+            writeWithRejects(writer, customers, rejectPercent);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    /**
+     * Writes a file in which rejectPercent% of the customers break one of the model's facets or its
+     * StartsWithCapitalLetter rule, cycling through the different kinds of violation
+     */
+    public static void writeWithRejects(Writer writer, int customers, int rejectPercent) throws IOException {
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        writer.write("<CustomersFile xmlns=\"http://www.c24.biz/io/GettingStarted/Customer\">\n");
+        for(int i=0; i < customers; i++) {
+            // Spread the rejects evenly rather than bunching them at the start
+            if((i * 37) % 100 < rejectPercent) {
+                StringWriter customer = new StringWriter();
+                writeCustomer(customer, i, 0);
+                writer.write(invalidate(customer.toString(), i / 100));
+            } else {
+                writeCustomer(writer, i, 0);
+            }
+        }
+        writer.write("</CustomersFile>\n");
+    }
+
+    private static String invalidate(String customer, int violation) {
+        switch(violation % VIOLATIONS) {
+            case 0: return customer.replace("<CustomerAcronym>C", "<CustomerAcronym>c");
+            case 1: return customer.replaceFirst("<CountryOfResidence>..", "<CountryOfResidence>USA");
+            case 2: return customer.replaceFirst("<CountryOfResidence>.", "<CountryOfResidence>u");
+            case 3: return customer.replaceFirst("<SortCode>", "<SortCode>1");
+            case 4: return customer.replaceFirst("<PostZipCode>[^<]*", "<PostZipCode>E1");
+            case 5: return customer.replace("<BIC></BIC>", "<BIC>ABCDEFGHIJKL</BIC>");
+            default: return customer.replaceFirst("<PostZipCode>.", "<PostZipCode>e");
+        }
+    }
+
+    static void writeCustomer(Writer writer, int i, int revision) throws IOException {
+
+        String number = customerNumber(i);
+        String postcode = POSTCODES[i % POSTCODES.length];
+
+        writer.write("    <Customer>\n");
+        element(writer, "CustomerNumber", number);
+        element(writer, "CustomerAcronym", "C" + Integer.toString(i, 36).toUpperCase());
+        writer.write("        <Address>\n");
+        writer.write("            <AddressLine>" + (1 + i % 250) + "</AddressLine>\n");
+        writer.write("            <AddressLine>" + STREETS[i % STREETS.length] + "</AddressLine>\n");
+        writer.write("            <AddressLine>London</AddressLine>\n");
+        writer.write("            <AddressLine>" + postcode + "</AddressLine>\n");
+        writer.write("            <AddressLine>UK</AddressLine>\n");
+        writer.write("        </Address>\n");
+        element(writer, "PostZipCode", postcode);
+        element(writer, "TelephoneNumber", "+44 207 555 " + (1000 + (i + revision) % 9000));
+        element(writer, "EmailAddress", "customer" + number + "@c24.biz");
+        element(writer, "BIC", "");
+        element(writer, "FaxNumber", "+44 207 555 " + (1000 + (i + 1) % 9000));
+        element(writer, "TelexNumber", "");
+        element(writer, "CountryOfResidence", COUNTRIES[i % COUNTRIES.length]);
+        element(writer, "FedwireCode", "");
+        element(writer, "ChipsParticipantCode", "");
+        element(writer, "ChipsUID", "");
+        element(writer, "SortCode", String.valueOf(600000 + (i * 7) % 100000));
+        element(writer, "BankleitzhalCode", "");
+        writer.write("    </Customer>\n");
+    }
+
+    /**
+     * Customer Number is limited to 6 characters. The first 900,000 customers are numbered 100000 to 999999;
+     * after that the first character is a letter and the rest base 36, so every number is unique.
+     */
+    static String customerNumber(int i) {
+        if(i < DECIMAL_NUMBERS) {
+            return String.valueOf(100000 + i);
+        }
+        int n = i - DECIMAL_NUMBERS;
+        if(n >= 26 * BASE36_5) {
+            throw new IllegalArgumentException("Customer " + i + " has no unique 6 character Customer Number");
+        }
+        String rest = Integer.toString(n % BASE36_5, 36).toUpperCase();
+        StringBuilder number = new StringBuilder(6).append((char) ('A' + n / BASE36_5));
+        for(int pad = rest.length(); pad < 5; pad++) {
+            number.append('0');
+        }
+        return number.append(rest).toString();
+    }
+
+    private static void element(Writer writer, String name, String value) throws IOException {
+        writer.write("        <");
+        writer.write(name);
+        writer.write('>');
+        writer.write(value);
+        writer.write("</");
+        writer.write(name);
+        writer.write(">\n");
+    }
+
+    public static void main(String[] args) throws IOException {
+        write(new File(args[0]), Integer.parseInt(args[1]));
+    }
+
+}
@@ -0,0 +1,27 @@
+package utils;
+
+import java.io.OutputStream;
+
+/**
+ * Discards everything written to it, counting the bytes, so that examples and benchmarks of marshaling
+ * measure C24 rather than I/O
+ */
+public class NullOutputStream extends OutputStream {
+
+    private long count;
+
+    @Override
+    public void write(int b) {
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        count += len;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+}
@@ -0,0 +1,98 @@
+package utils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Writes synthetic purchase-order documents of arbitrary size.
+ *
+ * The output is deterministic for a given order number and line item count and respects
+ * src/main/C24/purchase-order.dod: ISO8601 dates and times, three letter currencies from the
+ * CurrencyCode enumeration and numeric weights, prices and quantities. Shipper is optional, and every
+ * tenth order (order numbers ending in 9) is collected by the customer and so has none.
+ *
+ */
+public class PurchaseOrderGenerator {
+
+    private static final String[] DESCRIPTIONS = {"Large Mallet", "Hinge and Bracket", "Widget", "Sprocket", "Flange"};
+    private static final String[] CURRENCIES = {"GBP", "USD", "EUR"};
+    private static final String[] SHIPPERS = {"APC Ltd", "Parcel Force", "DHL"};
+
+    public static File generate(int lineItems) throws IOException {
+        File file = File.createTempFile("purchase-order-" + lineItems + "-", ".xml");
+        file.deleteOnExit();
+        write(file, 0, lineItems);
+        return file;
+    }
+
+    /**
+     * Writes one purchase-order document per file into directory, each with lineItems line items
+     */
+    public static void writeAll(File directory, int orders, int lineItems) throws IOException {
+        directory.mkdirs();
+        for(int order = 0; order < orders; order++) {
+            write(new File(directory, "purchase-order-" + order + ".xml"), order, lineItems);
+        }
+    }
+
+    public static void write(File file, int order, int lineItems) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 64 * 1024);
+        try {
+            write(writer, order, lineItems);
+        } finally {
+            writer.close();
+        }
+    }
+
+    public static void write(Writer writer, int order, int lineItems) throws IOException {
+
+        // Spread orders over a year so that date bucketing has something to work with
+        int day = 1 + order % 28;
+        int month = 1 + (order / 28) % 12;
+
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        writer.write("<purchase-order xmlns=\"http://www.c24.biz/io/GettingStarted/PurchaseOrder\">\n");
+        writer.write("    <po-number>" + pad(order / 1000000, 2) + "-" + pad(order % 1000000, 6) + "</po-number>\n");
+        writer.write("    <purchase-date>2014-" + pad(month, 2) + "-" + pad(day, 2) + "T" + pad(order % 24, 2) + ":13:51.0Z</purchase-date>\n");
+        writer.write("    <shipping-date>2014-" + pad(month, 2) + "-" + pad(Math.min(28, day + 3), 2) + "</shipping-date>\n");
+        writer.write("    <delivery-time-slot>" + pad(9 + order % 8, 2) + ":00:00</delivery-time-slot>\n");
+        writer.write("    <customer>\n");
+        writer.write("        <name>Customer " + order + "</name>\n");
+        writer.write("        <address>" + (1 + order % 500) + " A Street</address>\n");
+        writer.write("    </customer>\n");
+        if(order % 10 != 9) {
+            writer.write("    <shipper>\n");
+            writer.write("        <name>" + SHIPPERS[order % SHIPPERS.length] + "</name>\n");
+            writer.write("        <per-ounce-rate>" + (10 + order % SHIPPERS.length) + "</per-ounce-rate>\n");
+            writer.write("    </shipper>\n");
+        }
+        for(int i = 0; i < lineItems; i++) {
+            int seed = order * 31 + i;
+            writer.write("    <line-items>\n");
+            writer.write("        <description>" + DESCRIPTIONS[seed % DESCRIPTIONS.length] + "</description>\n");
+            writer.write("        <per-unit-ounces>" + (1 + seed % 16) + "</per-unit-ounces>\n");
+            writer.write("        <price>" + (1 + seed % 100) + "." + pad(seed % 100, 2) + "</price>\n");
+            writer.write("        <quantity>" + (1 + seed % 10) + "</quantity>\n");
+            writer.write("        <currency>" + CURRENCIES[seed % CURRENCIES.length] + "</currency>\n");
+            writer.write("    </line-items>\n");
+        }
+        writer.write("</purchase-order>\n");
+    }
+
+    private static String pad(int value, int width) {
+        String str = String.valueOf(value);
+        while(str.length() < width) {
+            str = "0" + str;
+        }
+        return str;
+    }
+
+    public static void main(String[] args) throws IOException {
+        write(new File(args[0]), 0, Integer.parseInt(args[1]));
+    }
+
+}
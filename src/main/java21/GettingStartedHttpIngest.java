@@ -0,0 +1,85 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import ingest.IngestLoadGenerator;
+import ingest.IngestServer;
+
+/**
+ * Shows how to expose parsing, validation and transformation as an HTTP service.
+ *
+ * Note. this example needs Java 21 - build and run it with mvn clean install -Pjava21
+ *
+ */
+public class GettingStartedHttpIngest {
+
+    public static void main(String[] args) throws Exception {
+
+        // IngestServer is built on the JDK's own com.sun.net.httpserver, so there's no container to deploy to.
+        // Every request gets its own virtual thread: these are cheap enough that there's no pool to size,
+        // and a thread blocked reading a slow client's request doesn't stop other requests being served.
+        // Port 0 picks any free port.
+
+        try(IngestServer server = IngestServer.withVirtualThreads(0).start()) {
+
+            HttpClient client = HttpClient.newHttpClient();
+
+            // POST a Customers file as XML and get it back, validated, as JSON
+
+            HttpRequest request = HttpRequest.newBuilder(server.uri(IngestServer.CUSTOMERS + "?as=json"))
+                .header("Content-Type", "application/xml")
+                .POST(HttpRequest.BodyPublishers.ofFile(Paths.get("src/main/resources/Customers.xml")))
+                .build();
+
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            System.out.println(response.statusCode() + " " + response.body());
+
+            // The same file run through GenerateContactListTransform. The ContactDetailsFile is streamed
+            // back through C24.write as it's marshaled rather than being buffered first.
+
+            request = HttpRequest.newBuilder(server.uri(IngestServer.CUSTOMERS + "?transform=contacts"))
+                .header("Content-Type", "application/xml")
+                .POST(HttpRequest.BodyPublishers.ofFile(Paths.get("src/main/resources/Customers.xml")))
+                .build();
+
+            response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            System.out.println(response.statusCode() + " " + response.body());
+
+            // Invalid documents are rejected with a 422. With validate=full we're told about every failure,
+            // one per line, rather than just the first
+
+            String invalid = "{\"CustomersFile\":{\"Customer\":[{\"CustomerNumber\":\"1\",\"CustomerAcronym\":\"oTwist\"}]}}";
+            request = HttpRequest.newBuilder(server.uri(IngestServer.CUSTOMERS + "?validate=full"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(invalid))
+                .build();
+
+            response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            System.out.println(response.statusCode() + " " + response.body());
+
+            // Purchase orders work the same way
+
+            request = HttpRequest.newBuilder(server.uri(IngestServer.PURCHASE_ORDERS + "?as=json"))
+                .header("Content-Type", "application/xml")
+                .POST(HttpRequest.BodyPublishers.ofFile(Paths.get("src/main/resources/purchase-order.xml")))
+                .build();
+
+            response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            System.out.println(response.statusCode() + " " + response.body());
+
+            // To see how the server copes with bursts, IngestLoadGenerator fires many concurrent requests at
+            // it and records their latency. Run its main() to compare virtual threads with a fixed pool of
+            // platform threads at up to 10,000 concurrent clients.
+
+            try(IngestLoadGenerator generator = new IngestLoadGenerator()) {
+                URI uri = server.uri(IngestServer.CUSTOMERS + "?transform=contacts&as=json");
+                byte[] body = Files.readAllBytes(Paths.get("src/main/resources/Customers.xml"));
+                System.out.println(generator.run(uri, body, "application/xml", 100, 10));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,178 @@
+package ingest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import metrics.LatencyHistogram;
+
+/**
+ * Drives an IngestServer with a burst of concurrent clients and measures latency and throughput.
+ *
+ * Each client is a virtual thread which waits for all the others to be ready, then sends its requests
+ * one after another. Latency runs from sending a request to having read the whole response, so it
+ * includes any time spent queueing for a server thread.
+ *
+ * main() compares a server using virtual threads with one using a fixed pool of platform threads at up to
+ * 10,000 concurrent clients. Client and server share one process, so each connection needs two file
+ * descriptors; raise the limit first, e.g. ulimit -n 65536.
+ *
+ */
+public class IngestLoadGenerator implements AutoCloseable {
+
+    /**
+     * The outcome of one run
+     */
+    public static class Result {
+
+        private final int concurrency;
+        private final long elapsedNanos;
+        private final long errors;
+        private final LatencyHistogram latencies;
+
+        Result(int concurrency, long elapsedNanos, long errors, LatencyHistogram latencies) {
+            this.concurrency = concurrency;
+            this.elapsedNanos = elapsedNanos;
+            this.errors = errors;
+            this.latencies = latencies;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        /**
+         * Requests which completed with a 200, per second
+         */
+        public long getThroughput() {
+            return (latencies.getCount() - errors) * 1000000000L / Math.max(1, elapsedNanos);
+        }
+
+        /**
+         * Requests which failed or returned anything other than a 200
+         */
+        public long getErrors() {
+            return errors;
+        }
+
+        public LatencyHistogram getLatencies() {
+            return latencies;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%6d clients %8d requests %6d errors %8d/s  mean %7.1fms  p50 %7.1fms  p99 %7.1fms  max %7.1fms",
+                concurrency, latencies.getCount(), errors, getThroughput(), latencies.getMean() / 1e6,
+                latencies.getPercentile(50) / 1e6, latencies.getPercentile(99) / 1e6, latencies.getMax() / 1e6);
+        }
+    }
+
+    private final ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient http = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(30))
+        .executor(clients)
+        .build();
+
+    /**
+     * Sends requestsPerClient copies of body to uri from each of concurrency clients at once
+     */
+    public Result run(URI uri, byte[] body, String contentType, int concurrency, int requestsPerClient) throws InterruptedException {
+
+        HttpRequest request = HttpRequest.newBuilder(uri)
+            .header("Content-Type", contentType)
+            .timeout(Duration.ofMinutes(2))
+            .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+            .build();
+
+        LatencyHistogram latencies = new LatencyHistogram();
+        AtomicLong errors = new AtomicLong();
+        CountDownLatch ready = new CountDownLatch(concurrency);
+        CountDownLatch go = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(concurrency);
+
+        for(int i = 0; i < concurrency; i++) {
+            clients.execute(() -> {
+                try {
+                    ready.countDown();
+                    go.await();
+                    for(int j = 0; j < requestsPerClient; j++) {
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                            if(response.statusCode() != 200) {
+                                errors.incrementAndGet();
+                            }
+                        } catch(IOException ioEx) {
+                            errors.incrementAndGet();
+                        }
+                        latencies.record(System.nanoTime() - start);
+                    }
+                } catch(InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        done.await();
+        return new Result(concurrency, System.nanoTime() - start, errors.get(), latencies);
+    }
+
+    @Override
+    public void close() {
+        clients.shutdownNow();
+    }
+
+    /**
+     * Arguments: [platform pool threads] [requests per client]
+     */
+    public static void main(String[] args) throws Exception {
+
+        int poolThreads = args.length > 0? Integer.parseInt(args[0]) : 200;
+        int requestsPerClient = args.length > 1? Integer.parseInt(args[1]) : 5;
+        int[] concurrencies = {10, 100, 1000, 10000};
+
+        byte[] body = Files.readAllBytes(Paths.get("src/main/resources/Customers.xml"));
+        String path = IngestServer.CUSTOMERS + "?validate=full&transform=contacts&as=json";
+
+        List<String> report = new ArrayList<>();
+        try(IngestLoadGenerator generator = new IngestLoadGenerator()) {
+            for(boolean virtual : new boolean[] {true, false}) {
+                String name = virtual? "virtual threads" : poolThreads + " platform threads";
+                try(IngestServer server = virtual? IngestServer.withVirtualThreads(0) : IngestServer.withThreadPool(0, poolThreads)) {
+                    server.start();
+                    URI uri = server.uri(path);
+
+                    // Warm up the JIT, the transform pool and the client's connections
+                    generator.run(uri, body, "application/xml", 100, 50);
+
+                    for(int concurrency : concurrencies) {
+                        Result result = generator.run(uri, body, "application/xml", concurrency, requestsPerClient);
+                        report.add(String.format("%-20s %s", name, result));
+                        System.out.println(report.get(report.size() - 1));
+                    }
+                }
+            }
+        }
+
+        System.out.println();
+        report.forEach(System.out::println);
+    }
+
+}
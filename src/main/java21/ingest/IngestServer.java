@@ -0,0 +1,266 @@
+package ingest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import biz.c24.io.api.C24;
+import biz.c24.io.api.C24.Format;
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.data.ValidationEvent;
+import biz.c24.io.api.data.ValidationException;
+import biz.c24.io.gettingstarted.customer.CustomersFile;
+import biz.c24.io.gettingstarted.purchaseorder.PurchaseorderDocumentRoot;
+import biz.c24.io.gettingstarted.transform.GenerateContactListTransform;
+
+/**
+ * An embedded HTTP service which parses, validates and optionally transforms the documents POSTed to it.
+ *
+ * Customers files are accepted at /customers and purchase orders at /purchase-orders, as XML or JSON
+ * according to the request's Content-Type. The query string controls the processing:
+ * <ul>
+ * <li>validate=fast (the default) stops at the first failure, validate=full reports every failure and
+ *     validate=none skips validation</li>
+ * <li>transform=contacts runs a Customers file through GenerateContactListTransform</li>
+ * <li>as=json or as=xml picks the response format, which otherwise follows the Accept header and then
+ *     the request's format</li>
+ * </ul>
+ *
+ * The result is streamed to the client with C24.write as it's marshaled, using chunked encoding, rather
+ * than being buffered first. Failures are reported as text/plain: 400 for a document which can't be parsed,
+ * 422 for one which is invalid, with one line per validation failure, or which the transform rejects, and
+ * 500 if the transform fails for any other reason.
+ *
+ * Each request runs to completion on its own thread. withVirtualThreads() gives every request a virtual
+ * thread, so a burst of requests - or clients slow to send their bodies - queue on the server's sockets
+ * rather than on a pool; withThreadPool() is the traditional alternative, for comparison.
+ *
+ */
+public class IngestServer implements AutoCloseable {
+
+    public static final String CUSTOMERS = "/customers";
+    public static final String PURCHASE_ORDERS = "/purchase-orders";
+
+    private static final int UNPROCESSABLE_ENTITY = 422;
+
+    // Enough for a burst of connections to wait to be accepted rather than be refused; the OS may cap it
+    private static final int BACKLOG = 16384;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    // Transforms aren't shared between threads, and with a thread per request a ThreadLocal would never be reused.
+    // Transforming is CPU-bound, so no more than a couple per core are worth keeping; after a burst of requests
+    // any beyond that are left to the garbage collector rather than kept forever.
+    private static final int IDLE_TRANSFORMS = Runtime.getRuntime().availableProcessors() * 2;
+
+    private final BlockingQueue<GenerateContactListTransform> transforms = new ArrayBlockingQueue<>(IDLE_TRANSFORMS);
+
+    /**
+     * A server which handles each request on a new virtual thread
+     *
+     * @param port the port to listen on, or 0 for any free port
+     */
+    public static IngestServer withVirtualThreads(int port) throws IOException {
+        return new IngestServer(new InetSocketAddress(port), Executors.newVirtualThreadPerTaskExecutor(), BACKLOG);
+    }
+
+    /**
+     * A server which handles requests on a fixed pool of platform threads, queueing those which arrive
+     * while every thread is busy
+     */
+    public static IngestServer withThreadPool(int port, int threads) throws IOException {
+        return new IngestServer(new InetSocketAddress(port), Executors.newFixedThreadPool(threads), BACKLOG);
+    }
+
+    /**
+     * @param backlog the most connections waiting to be accepted, or 0 for the system default
+     */
+    public IngestServer(InetSocketAddress address, ExecutorService executor, int backlog) throws IOException {
+        this.executor = executor;
+        server = HttpServer.create(address, backlog);
+        server.setExecutor(executor);
+        server.createContext(CUSTOMERS, exchange -> handle(exchange, CustomersFile.class, true));
+        server.createContext(PURCHASE_ORDERS, exchange -> handle(exchange, PurchaseorderDocumentRoot.class, false));
+    }
+
+    public IngestServer start() {
+        server.start();
+        return this;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public URI uri(String path) {
+        return URI.create("http://localhost:" + getPort() + path);
+    }
+
+    /**
+     * Stops accepting requests and waits briefly for those in progress to finish
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handle(HttpExchange exchange, Class<? extends ComplexDataObject> type, boolean transformable) throws IOException {
+        try(exchange) {
+            if(!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                sendText(exchange, 405, "Only POST is supported");
+                return;
+            }
+
+            Map<String, String> query = query(exchange.getRequestURI());
+            Format input = format(exchange.getRequestHeaders().getFirst("Content-Type"), Format.XML);
+            Format output = query.containsKey("as")? format(query.get("as"), input) : format(exchange.getRequestHeaders().getFirst("Accept"), input);
+
+            ComplexDataObject document;
+            try(InputStream in = exchange.getRequestBody()) {
+                document = C24.parse(type).as(input).from(in);
+            } catch(IOException | RuntimeException ex) {
+                // Malformed input can surface as either, depending on where the parser gives up
+                sendText(exchange, 400, "Unable to parse " + type.getSimpleName() + ": " + ex.getMessage());
+                return;
+            }
+
+            String validate = query.getOrDefault("validate", "fast");
+            switch(validate) {
+                case "fast":
+                    try {
+                        C24.validate(document);
+                    } catch(ValidationException vEx) {
+                        sendText(exchange, UNPROCESSABLE_ENTITY, vEx.getFieldName() + ": " + vEx.getReason());
+                        return;
+                    }
+                    break;
+                case "full":
+                    ValidationEvent[] failures = C24.validateFully(document);
+                    if(failures != null && failures.length > 0) {
+                        sendFailures(exchange, failures);
+                        return;
+                    }
+                    break;
+                case "none":
+                    break;
+                default:
+                    sendText(exchange, 400, "validate must be one of fast, full or none");
+                    return;
+            }
+
+            ComplexDataObject result = document;
+            if("contacts".equals(query.get("transform"))) {
+                if(!transformable) {
+                    sendText(exchange, 400, "Only Customers files can be transformed");
+                    return;
+                }
+                try {
+                    result = transform((CustomersFile) document);
+                } catch(ValidationException vEx) {
+                    sendText(exchange, UNPROCESSABLE_ENTITY, "Transform failed: " + vEx.getFieldName() + ": " + vEx.getReason());
+                    return;
+                } catch(RuntimeException ex) {
+                    sendText(exchange, 500, "Transform failed: " + ex);
+                    return;
+                }
+            } else if(query.containsKey("transform")) {
+                sendText(exchange, 400, "Unknown transform " + query.get("transform"));
+                return;
+            }
+
+            // A length of 0 selects chunked encoding, so the response goes out as C24.write produces it
+            exchange.getResponseHeaders().set("Content-Type", contentType(output));
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            C24.write(result).as(output).to(out);
+            out.flush();
+        }
+    }
+
+    private ComplexDataObject transform(CustomersFile file) throws ValidationException {
+        GenerateContactListTransform xform = transforms.poll();
+        if(xform == null) {
+            xform = new GenerateContactListTransform();
+        }
+        try {
+            return xform.transform(file);
+        } finally {
+            // Dropped if the pool is already full
+            transforms.offer(xform);
+        }
+    }
+
+    private static void sendFailures(HttpExchange exchange, ValidationEvent[] failures) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(UNPROCESSABLE_ENTITY, 0);
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8));
+        for(ValidationEvent failure : failures) {
+            writer.println(failure.getLocation() + ": " + failure.getMessage());
+        }
+        writer.flush();
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static Format format(String mediaType, Format otherwise) {
+        if(mediaType == null) {
+            return otherwise;
+        }
+        String lower = mediaType.toLowerCase();
+        if(lower.contains("json")) {
+            return Format.JSON;
+        } else if(lower.contains("xml")) {
+            return Format.XML;
+        }
+        return otherwise;
+    }
+
+    private static String contentType(Format format) {
+        return (format == Format.JSON? "application/json" : "application/xml") + "; charset=UTF-8";
+    }
+
+    private static Map<String, String> query(URI uri) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = uri.getQuery();
+        if(query != null) {
+            for(String parameter : query.split("&")) {
+                int equals = parameter.indexOf('=');
+                if(equals > 0) {
+                    parameters.put(parameter.substring(0, equals), parameter.substring(equals + 1));
+                } else if(!parameter.isEmpty()) {
+                    parameters.put(parameter, "");
+                }
+            }
+        }
+        return parameters;
+    }
+
+}
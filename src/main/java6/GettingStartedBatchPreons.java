@@ -0,0 +1,100 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import arena.BatchPreonConverter;
+import arena.PreonBatch;
+import utils.CustomersFileGenerator;
+import biz.c24.io.api.C24;
+import biz.c24.io.gettingstarted.customer.Customer;
+import biz.c24.io.gettingstarted.customer.CustomersFile;
+
+/**
+ * Shows how to convert a large number of Customers to Preons in parallel without allocating an array per Preon.
+ * Please ensure you are familiar with GettingStartedPreon before proceeding.
+ *
+ * Pass the number of customers to generate as the first argument (default 1,000,000).
+ *
+ */
+public class GettingStartedBatchPreons {
+
+    public static void main(String[] args) throws IOException {
+
+        int count = args.length > 0? Integer.parseInt(args[0]) : 1000000;
+        File input = CustomersFileGenerator.generate(count);
+        Customer[] customers = C24.parse(CustomersFile.class).from(input).getCustomer();
+
+        // The usual way: each toPreon() creates a buffer, then copies it into an array for the Preon
+
+        long heap = usedHeap();
+        long gc = gcMillis();
+        long start = System.nanoTime();
+        biz.c24.io.gettingstarted.customer.preon.Customer[] preons = new biz.c24.io.gettingstarted.customer.preon.Customer[customers.length];
+        for(int i = 0; i < customers.length; i++) {
+            preons[i] = customers[i].toPreon();
+        }
+        report("toPreon()", start, gc);
+        System.out.println("Retaining " + (usedHeap() - heap) / 1024 + "KB");
+
+        // A BatchPreonConverter splits the Customers between its threads, and each writes its Preons
+        // one after another into an arena of large slabs
+
+        BatchPreonConverter<Customer, biz.c24.io.gettingstarted.customer.preon.Customer> converter =
+            new BatchPreonConverter<Customer, biz.c24.io.gettingstarted.customer.preon.Customer>(BatchPreonConverter.CUSTOMER);
+        try {
+            heap = usedHeap();
+            gc = gcMillis();
+            start = System.nanoTime();
+            PreonBatch<biz.c24.io.gettingstarted.customer.preon.Customer> batch = converter.convert(customers);
+            report("BatchPreonConverter", start, gc);
+            System.out.println("Retaining " + (usedHeap() - heap) / 1024 + "KB");
+            System.out.println(batch.getBytes() + " bytes of Preon data in " + batch.getFootprint() + " bytes of arenas");
+
+            // The Preons read exactly as before, and hold exactly the same data
+
+            boolean identical = true;
+            for(int i = 0; i < preons.length; i++) {
+                identical &= Arrays.equals(preons[i].getPreonData(), batch.detach(i).getPreonData());
+            }
+            System.out.println(batch.get(0).getCustomerNumber() + " " + batch.get(0).getTelephoneNumber() + ", identical: " + identical);
+
+            // Once a batch is finished with, e.g. when a cache is refreshed, releasing it lets the next batch
+            // reuse its arenas. Its Preons mustn't be used after that.
+
+            batch.release();
+            gc = gcMillis();
+            start = System.nanoTime();
+            batch = converter.convert(customers);
+            report("BatchPreonConverter reusing arenas", start, gc);
+            batch.release();
+
+        } finally {
+            converter.shutdown();
+        }
+    }
+
+    private static void report(String name, long start, long gc) {
+        System.out.println(name + ": " + (System.nanoTime() - start) / 1000000 + "ms, of which GC " + (gcMillis() - gc) + "ms");
+    }
+
+    /**
+     * Heap in use once garbage has been collected; approximate, but good enough to compare the two
+     */
+    private static long usedHeap() {
+        for(int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+
+}
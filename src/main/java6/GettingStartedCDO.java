@@ -14,11 +14,14 @@ import biz.c24.io.gettingstarted.customer.CustomerDataType;
 import biz.c24.io.gettingstarted.customer.CustomersFile;
 import biz.c24.io.gettingstarted.customer.Address;
 import biz.c24.io.gettingstarted.transform.GenerateContactListTransform;
+import rewrite.RewriteRules;
+import validation.SnapshotValidator;
+import validation.ParallelValidator;
 
 
 public class GettingStartedCDO {
     
-    public static void main(String[] args) throws IOException, ValidationException {
+    public static void main(String[] args) throws IOException, ValidationException, CloneNotSupportedException {
         
         // The first thing to know is the type that you want to parse.
         // In our case it's CustomersFile.class
@@ -80,7 +83,35 @@ public class GettingStartedCDO {
                 System.out.println(failure.getLocation() + ": " + failure.getMessage() + " (" + failure.getObject().toString() + ")");
             }
         }
-        
+
+        // Both forms of validation run on the calling thread. For large files the Customers can be validated across
+        // several cores instead; the results are identical and in the same order:
+
+        ParallelValidator validator = new ParallelValidator();
+        failures = validator.validateFully(file);
+        System.out.println("Parallel validation found " + failures.length + " failures");
+
+        try {
+            validator.validate(file);
+        } catch(ValidationException vEx) {
+            System.out.println("Message was invalid. Field " + vEx.getFieldName() + ": " + vEx.getReason() + " (" + vEx.getObject().toString() + ")");
+        }
+        validator.shutdown();
+
+        // If you're repeatedly changing a few Customers in a large file, there's no need to validate the
+        // unchanged ones again. A SnapshotValidator remembers the results for each Customer along with a snapshot
+        // of its values, and only re-validates those which no longer match their snapshot. We change a copy here
+        // so that the rest of this example still sees the original file:
+
+        CustomersFile enriched = (CustomersFile) file.cloneDeep();
+        SnapshotValidator snapshotValidator = new SnapshotValidator();
+        snapshotValidator.validateFully(enriched);
+
+        enriched.getCustomer()[1].setCountryOfResidence("US");
+
+        failures = snapshotValidator.validateFully(enriched);
+        System.out.println("Snapshot validation re-validated " + snapshotValidator.getRevalidated() + " customer(s) and found " + failures.length + " failures");
+
         // The simplest way to use your Transforms is:
         GenerateContactListTransform xform = new GenerateContactListTransform();
         
@@ -136,6 +167,17 @@ public class GettingStartedCDO {
         
         C24.write(file).with(listener).to(System.out);
         
+        // Rather than hand-writing a listener, simple field rewrites can be declared and compiled into one. The compiled
+        // listener only changes the marshaled output, so the Customers in file are left as they were, without cloning them:
+        
+        MarshalListener rules = RewriteRules.forType(CustomerDataType.getInstance())
+                                            .replacePrefix("Fax Number", "+44", "0")
+                                            .maskEmail("Email Address")
+                                            .mask("Telex Number", 2)
+                                            .newListener();
+        
+        C24.write(file).with(rules).to(System.out);
+        
         // The MarshalListener is not restricted to simply modifying existing CDOs. You can pass any CDOs to the StreamingSink's marshal method
         // hence for example you could read in additional objects from an external store and inject them into the marshaling process.
   
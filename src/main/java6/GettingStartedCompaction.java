@@ -0,0 +1,65 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import compaction.CommonValuesAdvisor;
+import compaction.FieldProfile;
+import utils.CustomersFileGenerator;
+
+/**
+ * Shows how to choose Common Values for a model from the data it will hold.
+ * Please ensure you are familiar with GettingStartedPreon before proceeding.
+ *
+ */
+public class GettingStartedCompaction {
+
+    public static void main(String[] args) throws Exception {
+
+        // GettingStartedPreon showed that declaring London as a Common Value of Address Line shrinks our
+        // Preons. The advisor finds values like that for us: we give it a representative corpus and it
+        // measures what every element costs in the Preon and which values recur.
+        //
+        // Measuring the heap taken by the CDOs is optional as it needs several full GCs per document
+
+        CommonValuesAdvisor advisor = new CommonValuesAdvisor(true, 10000);
+
+        advisor.add(new File("src/main/resources/Customers.xml"));
+        advisor.add(CustomersFileGenerator.generate(10000));
+
+        // First, how the different representations of the corpus compare
+
+        System.out.println(advisor.getRecords() + " customers in " + advisor.getDocuments() + " documents");
+        System.out.println("Source size:   " + advisor.getSourceBytes());
+        System.out.println("CDO heap size: " + advisor.getCdoHeapBytes());
+        System.out.println("Preon size:    " + advisor.getPreonBytes());
+
+        // Then where the Preon bytes go. A reference to a Common Value costs just a few bytes, measured
+        // from the existing Common Values, so any frequent value longer than that is worth considering
+
+        System.out.println("A Common Value reference takes " + advisor.getReferenceBytes() + " byte(s)");
+        for(FieldProfile field : advisor.getFields()) {
+            System.out.println(field.getType() + "/" + field.getElement() + ": " + field.getBytes() + " bytes, "
+                + field.getDistinctValues() + (field.isTruncated()? "+" : "") + " distinct values");
+
+            for(FieldProfile.Candidate candidate : field.getCandidates(advisor.getReferenceBytes(), 2, 3)) {
+                System.out.println("    '" + candidate.getValue() + "' occurs " + candidate.getOccurrences()
+                    + " times and would save " + candidate.getSavedBytes() + " bytes");
+            }
+        }
+
+        // Finally the same information as XML. Each commonValues block holds the element's existing Common
+        // Values plus the recommended ones, ready to replace the block in src/main/C24/Customers.dod;
+        // redeploy the model and the Preons built from it will be smaller.
+
+        File report = new File("target/compaction-report.xml");
+        report.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(report);
+        try {
+            advisor.writeReport(out, 2, 16);
+        } finally {
+            out.close();
+        }
+        System.out.println("Report written to " + report);
+    }
+
+}
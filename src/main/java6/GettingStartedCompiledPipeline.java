@@ -0,0 +1,104 @@
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import pipeline.CompiledParser;
+import pipeline.CompiledPipeline;
+import pipeline.CompiledWriter;
+import pipeline.OutputBuffer;
+import utils.CustomersFileGenerator;
+import static biz.c24.io.api.C24.Format.*;
+import biz.c24.io.gettingstarted.contact.ContactDetailsFile;
+import biz.c24.io.gettingstarted.customer.CustomersFile;
+import biz.c24.io.gettingstarted.customer.CustomersFileElement;
+import biz.c24.io.gettingstarted.transform.GenerateContactListTransform;
+
+/**
+ * Shows how to set up parsing, validation, transformation and marshaling once and reuse it for many
+ * small messages across many threads.
+ * Please ensure you are familiar with GettingStartedCDO before proceeding.
+ *
+ */
+public class GettingStartedCompiledPipeline {
+
+    public static void main(String[] args) throws Exception {
+
+        // Every call to C24.parse(...) or C24.write(...) creates a new builder, Source or Sink and buffers.
+        // That's negligible for a large file but for millions of small messages it's most of the garbage.
+        //
+        // Instead we can define each component once. Definitions are immutable so can be kept in a static
+        // field and shared between threads; behind the scenes each thread gets its own Source, Sink and
+        // buffers, which it reuses for every message.
+
+        CompiledParser<CustomersFile> parser = CompiledParser.parse(CustomersFile.class, CustomersFileElement.getInstance()).as(XML);
+        CompiledWriter writer = CompiledWriter.write().as(JSON);
+
+        // They can be used on their own...
+
+        StringWriter source = new StringWriter();
+        CustomersFileGenerator.write(source, 1);
+        final byte[] message = source.toString().getBytes("UTF-8");
+
+        CustomersFile file = parser.from(message);
+        writer.to(file, System.out);
+        System.out.println();
+
+        // ...or chained together, like the Scala parser -> validate -> transform -> writer example
+
+        final CompiledPipeline<CustomersFile, ContactDetailsFile> pipeline =
+            CompiledPipeline.from(parser)
+                            .validate()
+                            .transform(GenerateContactListTransform.class, ContactDetailsFile.class)
+                            .write(writer);
+
+        // The result can be written to a stream or, to avoid copying, taken straight from the thread's
+        // buffer. The buffer is only valid until the same thread next uses the pipeline.
+
+        OutputBuffer json = pipeline.process(message, 0, message.length);
+        System.out.println(json.toString("UTF-8"));
+
+        // Now share the one pipeline between several threads
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        final int messagesPerThread = 100000;
+        final AtomicLong bytes = new AtomicLong();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> results = new ArrayList<Future<?>>();
+        long start = System.nanoTime();
+        for(int i = 0; i < threads; i++) {
+            results.add(executor.submit(new Callable<Void>() {
+
+                @Override
+                public Void call() throws Exception {
+                    long written = 0;
+                    for(int j = 0; j < messagesPerThread; j++) {
+                        written += pipeline.process(message, 0, message.length).size();
+                    }
+                    bytes.addAndGet(written);
+                    return null;
+                }
+            }));
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.HOURS);
+
+        // A rate is only meaningful if every message went through; get() rethrows the first failure
+        for(Future<?> result : results) {
+            result.get();
+        }
+
+        long elapsed = System.nanoTime() - start;
+        System.out.println("Processed " + (long) threads * messagesPerThread + " messages on " + threads + " threads at "
+            + (long) threads * messagesPerThread * 1000000000L / elapsed + "/s, writing " + bytes.get() + " bytes");
+
+        // CompiledPipelineBenchmark compares the allocation per message with the fluent API
+    }
+
+}
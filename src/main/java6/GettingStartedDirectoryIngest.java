@@ -0,0 +1,64 @@
+import java.io.File;
+import java.io.IOException;
+
+import ingest.DirectoryIngest;
+import utils.CustomersFileGenerator;
+import static biz.c24.io.api.C24.Format.*;
+
+/**
+ * Shows how to turn a directory full of Customers files into a single, de-duplicated ContactDetailsFile.
+ * Please ensure you are familiar with GettingStartedCDO and GettingStartedPipeline before proceeding.
+ *
+ * Pass the number of files to generate as the first argument (default 2,000).
+ *
+ */
+public class GettingStartedDirectoryIngest {
+
+    public static void main(String[] args) throws IOException {
+
+        int files = args.length > 0? Integer.parseInt(args[0]) : 2000;
+        File directory = new File("target/customers");
+        File output = new File("target/ContactDetails.xml");
+
+        // Upstream systems often deliver many small files rather than one large one. Here each file holds
+        // 100 customers, 10 of which also appear in the next file.
+        CustomersFileGenerator.writeAll(directory, files, 100, 10);
+
+        final DirectoryIngest ingest = new DirectoryIngest();
+
+        // As with the TransformPipeline, progress can be watched while it runs
+        Thread monitor = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    while(true) {
+                        Thread.sleep(1000);
+                        if(ingest.getProgress() != null) {
+                            System.out.println(ingest.getProgress());
+                        }
+                    }
+                } catch(InterruptedException ex) {
+                    // Finished
+                }
+            }
+        };
+        monitor.setDaemon(true);
+        monitor.start();
+
+        ingest.run(directory, output, XML);
+        monitor.interrupt();
+        System.out.println(ingest.getProgress());
+
+        // Every customer appears once in the output, even though the overlapping ones were read twice:
+        // the duplicates count shows how many were dropped. The one kept always comes from the file whose
+        // name sorts first, so repeated runs give the same output.
+        //
+        // If a run is killed part way through, running it again picks up from the last checkpoint in
+        // target/ContactDetails.xml.work, skipping the files already spooled there. Files which fail to
+        // parse are logged and left out of the checkpoint, and run() then throws rather than write an
+        // output without their customers. Fixing them and re-running retries just those files and
+        // completes the output.
+    }
+
+}
@@ -0,0 +1,74 @@
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import metrics.C24Metrics;
+import metrics.InstrumentedC24;
+import utils.CustomersFileGenerator;
+import utils.NullOutputStream;
+import biz.c24.io.api.C24;
+import biz.c24.io.api.C24.Format;
+import biz.c24.io.gettingstarted.contact.ContactDetailsFile;
+import biz.c24.io.gettingstarted.customer.CustomersFile;
+import biz.c24.io.gettingstarted.transform.GenerateContactListTransform;
+
+/**
+ * Shows how to find out where time and memory go between parsing, validating, transforming and writing.
+ * Please ensure you are familiar with GettingStartedCDO before proceeding.
+ *
+ * While this runs, connect jconsole or VisualVM and look under c24.gettingstarted in the MBeans tab.
+ *
+ */
+public class GettingStartedMetrics {
+
+    public static void main(String[] args) throws Exception {
+
+        int customers = args.length > 0? Integer.parseInt(args[0]) : 1000;
+        int iterations = args.length > 1? Integer.parseInt(args[1]) : 200;
+
+        // Make the metrics visible over JMX and log a summary every few seconds.
+        // The summary goes through log4j at INFO on the 'metrics' logger - see log4j.properties
+        C24Metrics.registerMBeans();
+        C24Metrics.startLogging(5, TimeUnit.SECONDS);
+
+        File file = CustomersFileGenerator.generate(customers);
+        GenerateContactListTransform xform = new GenerateContactListTransform();
+
+        // InstrumentedC24 has the same calls as GettingStartedCDO, each of which is timed as it runs
+
+        for(int i = 0; i < iterations; i++) {
+            CustomersFile customersFile = InstrumentedC24.parse(CustomersFile.class, file);
+            InstrumentedC24.validate(customersFile);
+            InstrumentedC24.validateFully(customersFile);
+            ContactDetailsFile contactDetails = InstrumentedC24.transform(xform, customersFile);
+            InstrumentedC24.write(contactDetails, Format.JSON, new NullOutputStream());
+            InstrumentedC24.toPreon(customersFile);
+        }
+
+        C24Metrics.log();
+
+        // The instrumentation is intended to be left switched on. Compare the same validation with
+        // and without it - benchmarks.MetricsOverheadBenchmark gives a more rigorous answer.
+
+        CustomersFile customersFile = C24.parse(CustomersFile.class).from(file);
+        long plain = Long.MAX_VALUE;
+        long instrumented = Long.MAX_VALUE;
+        for(int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for(int i = 0; i < iterations; i++) {
+                C24.validate(customersFile);
+            }
+            plain = Math.min(plain, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for(int i = 0; i < iterations; i++) {
+                InstrumentedC24.validate(customersFile);
+            }
+            instrumented = Math.min(instrumented, System.nanoTime() - start);
+        }
+
+        System.out.println("validate: " + plain / iterations / 1000 + "us plain, " + instrumented / iterations / 1000 + "us instrumented");
+
+        C24Metrics.stopLogging();
+    }
+
+}
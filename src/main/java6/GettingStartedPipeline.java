@@ -0,0 +1,72 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import pipeline.TransformPipeline;
+import utils.CustomersFileGenerator;
+import utils.NullOutputStream;
+import static biz.c24.io.api.C24.Format.*;
+
+/**
+ * Shows how to run parse, validate, transform and write as a concurrent pipeline.
+ * Please ensure you are familiar with GettingStartedCDO and GettingStartedStreaming before proceeding.
+ *
+ * Pass the number of customers to generate as the first argument (default 1,000,000).
+ *
+ */
+public class GettingStartedPipeline {
+
+    public static void main(String[] args) throws IOException {
+
+        int customers = args.length > 0? Integer.parseInt(args[0]) : 1000000;
+        File input = CustomersFileGenerator.generate(customers);
+        File output = new File("target/ContactDetails.json");
+        output.getParentFile().mkdirs();
+
+        // The Scala example chains file -> parser -> validate -> transform -> writer, but each step
+        // waits for the one before to finish. The TransformPipeline runs each step as its own stage, with
+        // validation and transformation spread across several threads, while keeping the output in input order
+
+        final TransformPipeline pipeline = new TransformPipeline();
+
+        // Stage statistics are live, so we can watch where the time goes while it runs
+        Thread monitor = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    while(true) {
+                        Thread.sleep(1000);
+                        if(pipeline.getStats() != null) {
+                            System.out.println(pipeline.getStats());
+                        }
+                    }
+                } catch(InterruptedException ex) {
+                    // Finished
+                }
+            }
+        };
+        monitor.setDaemon(true);
+        monitor.start();
+
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(output));
+        try {
+            pipeline.run(input, out, JSON);
+        } finally {
+            out.close();
+        }
+        monitor.interrupt();
+        System.out.println(pipeline.getStats());
+
+        // To see how it scales, run the same input with an increasing number of threads per stage
+
+        for(int threads = 1; threads <= Runtime.getRuntime().availableProcessors(); threads *= 2) {
+            long start = System.nanoTime();
+            new TransformPipeline(threads, threads, 1000, threads * 8).run(input, new NullOutputStream(), JSON);
+            System.out.println(threads + " thread(s) per stage: " + (System.nanoTime() - start) / 1000000 + "ms");
+        }
+    }
+
+}
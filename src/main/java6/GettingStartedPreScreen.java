@@ -0,0 +1,139 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+import prescreen.CustomerPreScreen;
+import streaming.CustomerStreamer;
+import streaming.RecordHandler;
+import utils.CustomersFileGenerator;
+import biz.c24.io.api.C24;
+import biz.c24.io.api.C24.Format;
+import static biz.c24.io.api.C24.Format.*;
+import biz.c24.io.api.data.ValidationEvent;
+import biz.c24.io.gettingstarted.customer.Customer;
+import biz.c24.io.gettingstarted.customer.CustomersFile;
+
+/**
+ * Shows how to throw away invalid Customers before paying to parse them.
+ * Please ensure you are familiar with GettingStartedStreaming before proceeding.
+ *
+ * Pass the number of customers to generate as the first argument (default 100,000) and the percentage
+ * of them to make invalid as the second (default 50).
+ *
+ */
+public class GettingStartedPreScreen {
+
+    public static void main(String[] args) throws IOException {
+
+        int customers = args.length > 0? Integer.parseInt(args[0]) : 100000;
+        int rejectPercent = args.length > 1? Integer.parseInt(args[1]) : 50;
+
+        File xml = CustomersFileGenerator.generateWithRejects(customers, rejectPercent);
+
+        // The pre-screen reads its constraints - lengths and the StartsWithCapitalLetter rule - from the model
+        CustomerPreScreen preScreen = new CustomerPreScreen();
+
+        // First let's check it never rejects a Customer which C24.validate would have accepted, in either format.
+        // Every Customer in the quarantine must be invalid, and between them the accepted and quarantined
+        // Customers must include exactly the invalid Customers of the original file.
+
+        byte[] json = toJson(xml);
+        check(preScreen, readAll(xml), XML, "XML");
+        check(preScreen, json, JSON, "JSON");
+
+        // Now compare parsing and validating every Customer with screening first.
+        // The pre-screen runs on its own thread and feeds the accepted Customers straight to the parser.
+
+        for(int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            long valid = validCustomers(new BufferedInputStream(new FileInputStream(xml)), XML);
+            long plain = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long screenedValid = validCustomers(preScreen.screened(new BufferedInputStream(new FileInputStream(xml)), XML, null), XML);
+            long screened = System.nanoTime() - start;
+
+            System.out.println(valid + " valid Customers in " + plain / 1000000 + "ms; with pre-screen " + screenedValid + " in " + screened / 1000000 + "ms");
+        }
+    }
+
+    private static void check(CustomerPreScreen preScreen, byte[] input, Format format, String name) throws IOException {
+
+        ByteArrayOutputStream accepted = new ByteArrayOutputStream();
+        ByteArrayOutputStream quarantine = new ByteArrayOutputStream();
+        CustomerPreScreen.Counts counts = preScreen.screen(new ByteArrayInputStream(input), format, accepted, quarantine);
+        System.out.println(name + " pre-screen: " + counts);
+
+        long[] original = verdicts(input, format);
+        long[] passed = verdicts(accepted.toByteArray(), format);
+        long[] rejected = counts.getRejected() == 0? new long[2] : verdicts(quarantine.toByteArray(), format);
+
+        if(rejected[0] != rejected[1]) {
+            throw new IllegalStateException((rejected[0] - rejected[1]) + " valid Customers were rejected");
+        }
+        if(original[0] != passed[0] + rejected[0] || original[1] != passed[1] + rejected[1]) {
+            throw new IllegalStateException("Pre-screen changed the validation verdict");
+        }
+    }
+
+    /**
+     * Returns the number of Customers and how many of them are invalid
+     */
+    private static long[] verdicts(byte[] input, Format format) throws IOException {
+        CustomersFile file = C24.parse(CustomersFile.class).as(format).from(new ByteArrayInputStream(input));
+        long[] verdicts = new long[2];
+        for(Customer customer : file.getCustomer()) {
+            verdicts[0]++;
+            ValidationEvent[] failures = C24.validateFully(customer);
+            if(failures != null && failures.length > 0) {
+                verdicts[1]++;
+            }
+        }
+        return verdicts;
+    }
+
+    private static long validCustomers(InputStream in, Format format) throws IOException {
+        final AtomicLong valid = new AtomicLong();
+        try {
+            CustomerStreamer.stream(in, format, new RecordHandler<Customer>() {
+
+                @Override
+                public void handle(Customer customer) {
+                    ValidationEvent[] failures = C24.validateFully(customer);
+                    if(failures == null || failures.length == 0) {
+                        valid.incrementAndGet();
+                    }
+                }
+            });
+        } finally {
+            in.close();
+        }
+        return valid.get();
+    }
+
+    private static byte[] toJson(File xml) throws IOException {
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        C24.write(C24.parse(CustomersFile.class).from(xml)).as(JSON).to(json);
+        return json.toByteArray();
+    }
+
+    private static byte[] readAll(File file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            for(int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                bytes.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return bytes.toByteArray();
+    }
+
+}
@@ -0,0 +1,82 @@
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cache.PreonCache;
+import utils.CustomersFileGenerator;
+import utils.PreonUtils;
+import biz.c24.io.gettingstarted.customer.CustomersFile;
+
+/**
+ * Shows how to avoid repeatedly parsing and validating the same reference data.
+ * Please ensure you are familiar with GettingStartedPreon before proceeding.
+ *
+ */
+public class GettingStartedPreonCache {
+
+    public static void main(String[] args) throws Exception {
+
+        // The cache is bounded by the size of the Preons it holds rather than by the number of files,
+        // so a few large files and many small ones are treated fairly. Here we allow 16MB.
+
+        final PreonCache<biz.c24.io.gettingstarted.customer.preon.CustomersFile> cache =
+            new PreonCache<biz.c24.io.gettingstarted.customer.preon.CustomersFile>(PreonCache.CUSTOMERS_FILE, 16 * 1024 * 1024);
+
+        final File file = CustomersFileGenerator.generate(10000);
+
+        // The first lookup parses, validates and converts to a Preon; the second is just a map lookup
+
+        long start = System.nanoTime();
+        biz.c24.io.gettingstarted.customer.preon.CustomersFile preon = cache.get(file);
+        System.out.println("First lookup:  " + (System.nanoTime() - start) / 1000 + "us");
+
+        start = System.nanoTime();
+        preon = cache.get(file);
+        System.out.println("Second lookup: " + (System.nanoTime() - start) / 1000 + "us");
+
+        System.out.println("Source size: " + PreonUtils.sizeOf(file) + " cached size: " + PreonUtils.sizeOf(preon));
+
+        // The cached Preon is shared and read-only. If you need to modify the document, ask for a CDO,
+        // which is converted from the Preon on each call and is yours to change
+
+        CustomersFile cdo = cache.getCdo(file);
+        cdo.getCustomer()[0].setCustomerAcronym("Changed");
+
+        // When many threads miss at once - e.g. after the file has been replaced - only one of them loads it
+
+        file.setLastModified(file.lastModified() + 1000);
+
+        int threads = 16;
+        final CountDownLatch ready = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicInteger failures = new AtomicInteger();
+        for(int i = 0; i < threads; i++) {
+            new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        ready.await();
+                        cache.get(file);
+                    } catch(Exception ex) {
+                        failures.incrementAndGet();
+                        ex.printStackTrace();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        ready.countDown();
+        done.await();
+        if(failures.get() > 0) {
+            throw new IllegalStateException(failures.get() + " of " + threads + " lookups failed");
+        }
+
+        // Expect 2 misses - the initial load and the reload. The remaining threads either wait for the reload
+        // or, if they arrive once it has been cached, hit.
+
+        System.out.println(cache);
+    }
+
+}
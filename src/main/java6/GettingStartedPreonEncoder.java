@@ -0,0 +1,105 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import encoder.PreonEncoder;
+import utils.CustomersFileGenerator;
+import biz.c24.io.api.C24;
+import static biz.c24.io.api.C24.Format.*;
+import biz.c24.io.gettingstarted.customer.preon.CustomersFile;
+import biz.c24.io.gettingstarted.transform.GenerateContactListTransform;
+
+/**
+ * Shows how to write Preons out without going through the general purpose marshaling stack.
+ * Please ensure you are familiar with GettingStartedPreon before proceeding.
+ *
+ * Pass the number of customers to generate for the timing comparison as the first argument (default 100,000).
+ *
+ */
+public class GettingStartedPreonEncoder {
+
+    public static void main(String[] args) throws Exception {
+
+        int customers = args.length > 0? Integer.parseInt(args[0]) : 100000;
+
+        CustomersFile preonFile = C24.parse(CustomersFile.class).from(new File("src/main/resources/Customers.xml"));
+
+        // The encoder writes straight into its own reusable buffer, draining it to any channel as it fills
+
+        PreonEncoder json = new PreonEncoder(PreonEncoder.Format.JSON);
+        WritableByteChannel stdout = Channels.newChannel(System.out);
+        json.encode(preonFile, stdout);
+        System.out.println();
+
+        // ContactDetailsFiles are supported too
+        biz.c24.io.gettingstarted.contact.preon.ContactDetailsFile contacts =
+            new GenerateContactListTransform().transform(C24.toCdo(preonFile)).toPreon();
+        PreonEncoder xml = new PreonEncoder(PreonEncoder.Format.XML);
+        xml.encode(contacts, stdout);
+        System.out.println();
+
+        // The output should be identical to what C24.write produces, byte for byte
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        json.encode(preonFile, Channels.newChannel(out));
+        compare("JSON CustomersFile", out, C24.write(preonFile).as(JSON).using("UTF-8").toStr());
+
+        out = new ByteArrayOutputStream();
+        xml.encode(preonFile, Channels.newChannel(out));
+        compare("XML CustomersFile", out, C24.write(preonFile).as(XML).using("UTF-8").toStr());
+
+        out = new ByteArrayOutputStream();
+        json.encode(contacts, Channels.newChannel(out));
+        compare("JSON ContactDetailsFile", out, C24.write(contacts).as(JSON).using("UTF-8").toStr());
+
+        out = new ByteArrayOutputStream();
+        xml.encode(contacts, Channels.newChannel(out));
+        compare("XML ContactDetailsFile", out, C24.write(contacts).as(XML).using("UTF-8").toStr());
+
+        // Now compare throughput on something larger
+
+        CustomersFile large = C24.parse(CustomersFile.class).from(CustomersFileGenerator.generate(customers));
+        WritableByteChannel sink = Channels.newChannel(new ByteArrayOutputStream() {
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                // Discard
+            }
+        });
+
+        for(int run = 0; run < 5; run++) {
+            long start = System.nanoTime();
+            json.encode(large, sink);
+            long encoderTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            C24.write(large).as(JSON).to(Channels.newOutputStream(sink));
+            long writerTime = System.nanoTime() - start;
+
+            System.out.println("PreonEncoder " + encoderTime / 1000000 + "ms, C24.write " + writerTime / 1000000 + "ms");
+        }
+    }
+
+    private static void compare(String name, ByteArrayOutputStream out, String expected) throws IOException {
+
+        byte[] actual = out.toByteArray();
+        byte[] reference = expected.getBytes("UTF-8");
+
+        if(Arrays.equals(actual, reference)) {
+            System.out.println(name + ": identical to C24.write (" + actual.length + " bytes)");
+        } else {
+            int i = 0;
+            while(i < actual.length && i < reference.length && actual[i] == reference[i]) {
+                i++;
+            }
+            System.out.println(name + ": differs from C24.write at byte " + i);
+            System.out.println("  PreonEncoder: " + new String(actual, Math.max(0, i - 20), Math.min(60, actual.length - Math.max(0, i - 20)), "UTF-8"));
+            System.out.println("  C24.write:    " + new String(reference, Math.max(0, i - 20), Math.min(60, reference.length - Math.max(0, i - 20)), "UTF-8"));
+            throw new IllegalStateException(name + ": PreonEncoder output differs from C24.write at byte " + i);
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import store.PreonStore;
+import streaming.CustomerStreamer;
+import streaming.RecordHandler;
+import utils.CustomersFileGenerator;
+import biz.c24.io.api.C24;
+import biz.c24.io.gettingstarted.customer.preon.Customer;
+
+/**
+ * Shows how to persist Preons so that a restarted process doesn't need to parse its source data again.
+ * Please ensure you are familiar with GettingStartedPreon and GettingStartedStreaming before proceeding.
+ *
+ * Pass the number of customers to generate as the first argument (default 1,000,000).
+ *
+ */
+public class GettingStartedPreonStore {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+
+        int customers = args.length > 0? Integer.parseInt(args[0]) : 1000000;
+        File source = CustomersFileGenerator.generate(customers);
+        File directory = new File("target/preon-store");
+
+        // Start from an empty store each run; otherwise we'd append to the last run's Customers
+        File[] previous = directory.listFiles();
+        if(previous != null) {
+            for(File file : previous) {
+                file.delete();
+            }
+        }
+
+        // A Preon is just a byte[], so once we've parsed (and validated) our data we can write the bytes
+        // straight to disk. Here we stream the Customers so the full file is never in memory:
+
+        final PreonStore<Customer> store = PreonStore.open(directory, "customers", PreonStore.CUSTOMER);
+        CustomerStreamer.streamPreons(source, new RecordHandler<Customer>() {
+
+            @Override
+            public void handle(Customer customer) throws IOException {
+                store.append(customer);
+            }
+        });
+
+        // Nothing is guaranteed to be on disk until we sync (close() also syncs)
+        store.close();
+
+        // Now imagine we've restarted. Reopening the store reads the index, trusting every entry which was
+        // synced, so none of the data is read; the Preons themselves are copied out of the memory-mapped
+        // data file as we ask for them
+
+        long start = System.nanoTime();
+        final PreonStore<Customer> reopened = PreonStore.open(directory, "customers", PreonStore.CUSTOMER);
+        long checksum = 0;
+        for(int i = 0; i < reopened.size(); i++) {
+            checksum += reopened.get(i).getCustomerNumber().length();
+        }
+        long storeTime = System.nanoTime() - start;
+
+        // Compare that with what we'd otherwise do on startup, parse the XML
+
+        start = System.nanoTime();
+        biz.c24.io.gettingstarted.customer.CustomersFile cdoFile = C24.parse(biz.c24.io.gettingstarted.customer.CustomersFile.class).from(source);
+        long parsed = 0;
+        for(biz.c24.io.gettingstarted.customer.Customer customer : cdoFile.getCustomer()) {
+            parsed += customer.getCustomerNumber().length();
+        }
+        long parseTime = System.nanoTime() - start;
+        cdoFile = null;
+
+        System.out.println("Reopened " + reopened.size() + " Preons in " + storeTime / 1000000 + "ms (" + checksum + ")");
+        System.out.println("Parsed   " + customers + " Customers in " + parseTime / 1000000 + "ms (" + parsed + ")");
+
+        // Reads are safe from any number of threads
+
+        final AtomicLong total = new AtomicLong();
+        Thread[] readers = new Thread[Runtime.getRuntime().availableProcessors()];
+        for(int t = 0; t < readers.length; t++) {
+            final int first = t;
+            final int stride = readers.length;
+            readers[t] = new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        for(int i = first; i < reopened.size(); i += stride) {
+                            total.addAndGet(reopened.get(i).getCustomerNumber().length());
+                        }
+                    } catch(IOException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                }
+            };
+            readers[t].start();
+        }
+        for(Thread reader : readers) {
+            reader.join();
+        }
+        System.out.println("Read " + reopened.size() + " Preons from " + readers.length + " threads (" + total.get() + ")");
+
+        reopened.close();
+    }
+
+}
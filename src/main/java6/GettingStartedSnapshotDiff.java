@@ -0,0 +1,90 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import diff.SnapshotDiff;
+import pipeline.TransformPipeline;
+import streaming.RecordHandler;
+import streaming.RecordSource;
+import utils.CustomersFileGenerator;
+import biz.c24.io.api.C24;
+import static biz.c24.io.api.C24.Format.*;
+import biz.c24.io.gettingstarted.customer.preon.Customer;
+
+/**
+ * Shows how to process only the Customers which have changed between two snapshots of a file.
+ * Please ensure you are familiar with GettingStartedPipeline before proceeding.
+ *
+ * Pass the number of customers to generate as the first argument (default 500,000). Customer Numbers must be
+ * unique within each file, which CustomersFileGenerator guarantees.
+ *
+ */
+public class GettingStartedSnapshotDiff {
+
+    public static void main(String[] args) throws IOException {
+
+        int customers = args.length > 0? Integer.parseInt(args[0]) : 500000;
+
+        // Yesterday's and today's files; about 1% of the Customers differ between them
+        final File yesterday = CustomersFileGenerator.generate(customers);
+        final File today = CustomersFileGenerator.generate(customers, 1);
+
+        File output = new File("target/ContactDetails-changes.json");
+        output.getParentFile().mkdirs();
+
+        // SnapshotDiff spills both files to disk in partitions, so it works with files much larger than the heap
+        final SnapshotDiff diff = new SnapshotDiff(new File("target"));
+        final SnapshotDiff.Counts[] counts = new SnapshotDiff.Counts[1];
+
+        // Only the added and changed Customers are handed to the pipeline to be validated and transformed.
+        // The differences arrive as Preons, so we convert back to CDOs first
+
+        RecordSource<biz.c24.io.gettingstarted.customer.Customer> changes = new RecordSource<biz.c24.io.gettingstarted.customer.Customer>() {
+
+            @Override
+            public void produce(final RecordHandler<biz.c24.io.gettingstarted.customer.Customer> handler) throws IOException {
+
+                counts[0] = diff.diff(yesterday, today, new SnapshotDiff.Handler() {
+
+                    @Override
+                    public void added(Customer customer) throws Exception {
+                        handler.handle(C24.<biz.c24.io.gettingstarted.customer.Customer>toCdo(customer));
+                    }
+
+                    @Override
+                    public void changed(Customer previous, Customer current) throws Exception {
+                        handler.handle(C24.<biz.c24.io.gettingstarted.customer.Customer>toCdo(current));
+                    }
+
+                    @Override
+                    public void removed(Customer customer) {
+                        System.out.println("Removed " + customer.getCustomerNumber());
+                    }
+                });
+            }
+        };
+
+        long start = System.nanoTime();
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(output));
+        try {
+            new TransformPipeline().run(changes, out, JSON);
+        } finally {
+            out.close();
+        }
+        System.out.println(counts[0] + " in " + (System.nanoTime() - start) / 1000000 + "ms");
+
+        // Compare with running the whole of today's file through the same pipeline
+
+        start = System.nanoTime();
+        out = new BufferedOutputStream(new FileOutputStream(new File("target/ContactDetails-all.json")));
+        try {
+            new TransformPipeline().run(today, out, JSON);
+        } finally {
+            out.close();
+        }
+        System.out.println("Full run in " + (System.nanoTime() - start) / 1000000 + "ms");
+    }
+
+}
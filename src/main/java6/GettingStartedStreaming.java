@@ -0,0 +1,108 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import streaming.CustomerStreamer;
+import streaming.RecordHandler;
+import streaming.StreamingIterator;
+import utils.CustomersFileGenerator;
+import biz.c24.io.gettingstarted.customer.Customer;
+
+/**
+ * Shows how to work through a CustomersFile which is too large to parse into a single CDO.
+ * Please ensure you are familiar with GettingStartedCDO before proceeding.
+ *
+ * Pass the number of customers to generate as the first argument (default 1,000,000).
+ * Run with a small heap (e.g. -Xmx64m) to see that memory stays flat as the file grows.
+ *
+ */
+public class GettingStartedStreaming {
+
+    private static final long MAX_LIVE_HEAP = 16 * 1024 * 1024;
+    private static final long MAX_GROWTH = 4 * 1024 * 1024;
+
+    public static void main(String[] args) throws IOException {
+
+        int customers = args.length > 0? Integer.parseInt(args[0]) : 1000000;
+
+        // Calling C24.parse(CustomersFile.class).from(file) builds the whole CustomersFile before we see
+        // the first Customer. Instead we can have each Customer handed to us as soon as it has been parsed:
+
+        CustomerStreamer.stream(new File("src/main/resources/Customers.xml"), new RecordHandler<Customer>() {
+
+            @Override
+            public void handle(Customer customer) {
+                System.out.println(customer.getCustomerNumber());
+            }
+        });
+
+        // If you'd rather pull records than have them pushed to you, use an iterator.
+        // Remember to close it if you stop before reaching the end of the file.
+
+        StreamingIterator<Customer> iterator = CustomerStreamer.iterator(new File("src/main/resources/Customers.xml"));
+        try {
+            while(iterator.hasNext()) {
+                System.out.println(iterator.next().getCustomerAcronym());
+            }
+        } finally {
+            iterator.close();
+        }
+
+        // Preons are also available, useful if you want to hold on to a compact copy of each record
+
+        CustomerStreamer.streamPreons(new File("src/main/resources/Customers.xml"), new RecordHandler<biz.c24.io.gettingstarted.customer.preon.Customer>() {
+
+            @Override
+            public void handle(biz.c24.io.gettingstarted.customer.preon.Customer customer) {
+                System.out.println(customer.getCustomerNumber() + " " + customer.getAddress().getAddressLine(2));
+            }
+        });
+
+        // Now let's check that memory really doesn't grow with the size of the file.
+        // Half way through streaming each file we collect garbage and measure the heap still in use, which
+        // is whatever the streamer is holding on to. We do that for a file of 1% of the customers and for the
+        // full file.
+
+        int smallCustomers = Math.max(1, customers / 100);
+        long smallLive = liveHeapWhileStreaming(CustomersFileGenerator.generate(smallCustomers), smallCustomers);
+        long largeLive = liveHeapWhileStreaming(CustomersFileGenerator.generate(customers), customers);
+
+        System.out.println("Heap held while streaming " + smallCustomers + " customers: " + smallLive / 1024 + "KB");
+        System.out.println("Heap held while streaming " + customers + " customers: " + largeLive / 1024 + "KB");
+
+        // A CDO-based parse, or a streamer which buffered the file, would hold several times the size of the
+        // file at this point and fail both checks for any sizeable file
+        if(largeLive > MAX_LIVE_HEAP || largeLive - smallLive > MAX_GROWTH) {
+            throw new IllegalStateException("Heap grew with the size of the file");
+        }
+    }
+
+    /**
+     * Heap in use half way through the file, over and above what was in use before streaming started
+     */
+    private static long liveHeapWhileStreaming(File file, final int customers) throws IOException {
+
+        final long before = liveHeap();
+        final long[] live = new long[1];
+        final long[] count = new long[1];
+        CustomerStreamer.stream(file, new RecordHandler<Customer>() {
+
+            @Override
+            public void handle(Customer customer) {
+                if(++count[0] == (customers + 1) / 2) {
+                    live[0] = liveHeap() - before;
+                }
+            }
+        });
+        System.out.println("Streamed " + count[0] + " customers from " + file.length() / 1024 + "KB");
+        return Math.max(0, live[0]);
+    }
+
+    private static long liveHeap() {
+        for(int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+}
@@ -0,0 +1,202 @@
+package arena;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.data.preon.PreonDataObject;
+import biz.c24.io.api.presentation.stream.FastByteArrayOutputStream;
+import biz.c24.io.gettingstarted.customer.Customer;
+
+/**
+ * Converts large batches of CDOs to Preons in parallel, writing the Preon data into pooled arenas.
+ *
+ * toPreon() writes each CDO into a new, growing buffer and then copies the result into an array of its
+ * own, so converting millions of Customers creates millions of short-lived arrays. Here the CDOs are split
+ * into chunks, each converted on a worker thread straight into an arena of large slabs. Released batches
+ * hand their arenas back to be reused by the next, so once the pool has grown to the size of a batch the
+ * only allocation is the Preon objects themselves.
+ *
+ * The Preons are read-only and can be shared between threads like any other. A converter can be used by
+ * several threads at once; call shutdown() when finished with it.
+ *
+ */
+public class BatchPreonConverter<C extends ComplexDataObject, P extends PreonDataObject> {
+
+    /**
+     * Writes one type of CDO as a Preon and wraps the Preon data
+     */
+    public interface PreonType<C, P> {
+
+        void write(C cdo, FastByteArrayOutputStream out) throws IOException;
+
+        /**
+         * Wraps the Preon written at offset in data, as toPreon() does for offset 0 of its own array
+         */
+        P allocate(byte[] data, int offset);
+    }
+
+    public static final PreonType<Customer, biz.c24.io.gettingstarted.customer.preon.Customer> CUSTOMER =
+        new PreonType<Customer, biz.c24.io.gettingstarted.customer.preon.Customer>() {
+
+            @Override
+            public void write(Customer cdo, FastByteArrayOutputStream out) throws IOException {
+                // As toPreon() does
+                cdo.writePreon(out, null);
+            }
+
+            @Override
+            public biz.c24.io.gettingstarted.customer.preon.Customer allocate(byte[] data, int offset) {
+                return biz.c24.io.gettingstarted.customer.preon.Customer.allocate(data, offset);
+            }
+        };
+
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final PreonType<C, P> type;
+    private final int threads;
+    private final int slabSize;
+    private final ExecutorService workers;
+    private final Queue<PreonArena> pool = new ConcurrentLinkedQueue<PreonArena>();
+
+    /**
+     * One thread per core and 1MB slabs
+     */
+    public BatchPreonConverter(PreonType<C, P> type) {
+        this(type, Runtime.getRuntime().availableProcessors(), 1024 * 1024);
+    }
+
+    public BatchPreonConverter(PreonType<C, P> type, int threads, int slabSize) {
+        this.type = type;
+        this.threads = threads;
+        this.slabSize = slabSize;
+        this.workers = Executors.newFixedThreadPool(threads);
+    }
+
+    public PreonBatch<P> convert(C[] cdos) throws IOException {
+        return convert(Arrays.asList(cdos));
+    }
+
+    public PreonBatch<P> convert(final List<? extends C> cdos) throws IOException {
+
+        final Object[] preons = new Object[cdos.size()];
+        final int[] lengths = new int[cdos.size()];
+
+        // More chunks than threads so that a slow thread doesn't hold up the batch
+        int chunks = Math.max(1, Math.min(threads * CHUNKS_PER_THREAD, cdos.size() / 1000));
+        int chunkSize = (cdos.size() + chunks - 1) / chunks;
+
+        List<PreonArena> arenas = new ArrayList<PreonArena>();
+        List<Future<?>> results = new ArrayList<Future<?>>();
+        for(int start = 0; start < cdos.size(); start += chunkSize) {
+            final int from = start;
+            final int to = Math.min(start + chunkSize, cdos.size());
+            final PreonArena arena = acquire();
+            arenas.add(arena);
+
+            results.add(workers.submit(new Callable<Void>() {
+
+                @Override
+                public Void call() throws IOException {
+                    for(int i = from; i < to; i++) {
+                        arena.begin();
+                        type.write(cdos.get(i), arena);
+                        preons[i] = type.allocate(arena.data(), arena.offset());
+                        lengths[i] = arena.length();
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        boolean converted = false;
+        try {
+            for(Future<?> result : results) {
+                result.get();
+            }
+            converted = true;
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", ex);
+        } catch(ExecutionException ex) {
+            throw unwrap(ex);
+        } finally {
+            if(!converted) {
+                // The other chunks must finish before their arenas can be reused
+                awaitAll(results);
+                release(arenas);
+            }
+        }
+        return new PreonBatch<P>(this, preons, lengths, arenas);
+    }
+
+    /**
+     * Arenas currently pooled for reuse
+     */
+    public int getPooledArenas() {
+        return pool.size();
+    }
+
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    P allocate(byte[] data, int offset) {
+        return type.allocate(data, offset);
+    }
+
+    void release(List<PreonArena> arenas) {
+        for(PreonArena arena : arenas) {
+            arena.recycle();
+            pool.add(arena);
+        }
+    }
+
+    private PreonArena acquire() {
+        PreonArena arena = pool.poll();
+        return arena != null? arena : new PreonArena(slabSize);
+    }
+
+    private static void awaitAll(List<Future<?>> results) {
+        boolean interrupted = false;
+        for(Future<?> result : results) {
+            while(true) {
+                try {
+                    result.get();
+                    break;
+                } catch(InterruptedException ex) {
+                    interrupted = true;
+                } catch(ExecutionException ex) {
+                    break;
+                }
+            }
+        }
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static IOException unwrap(ExecutionException ex) {
+        Throwable cause = ex.getCause();
+        if(cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        if(cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if(cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IOException(cause);
+    }
+
+}
@@ -0,0 +1,133 @@
+package arena;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import biz.c24.io.api.presentation.stream.FastByteArrayOutputStream;
+
+/**
+ * A FastByteArrayOutputStream that writes one Preon after another into large, reusable slabs rather than
+ * into a buffer of its own, so generated writePreon methods can write straight into the arena.
+ *
+ * Call begin() before each Preon; data(), offset() and length() then describe the bytes written since.
+ * A Preon that doesn't fit in the rest of the current slab is moved to the next one, which is made large
+ * enough if need be. size(), reset() and toByteArray() all refer to the Preon being written, exactly as they
+ * would for a new stream.
+ *
+ * recycle() keeps the slabs but makes them available for reuse, at which point any Preon still using them
+ * is overwritten. Not thread-safe.
+ *
+ */
+final class PreonArena extends FastByteArrayOutputStream {
+
+    private final int slabSize;
+    private final List<byte[]> slabs = new ArrayList<byte[]>();
+
+    private int current;
+    private byte[] slab;
+    private int start;
+    private int position;
+
+    PreonArena(int slabSize) {
+        super(1);
+        this.slabSize = slabSize;
+        slab = new byte[slabSize];
+        slabs.add(slab);
+    }
+
+    void begin() {
+        start = position;
+    }
+
+    byte[] data() {
+        return slab;
+    }
+
+    int offset() {
+        return start;
+    }
+
+    int length() {
+        return position - start;
+    }
+
+    /**
+     * Makes every slab available for reuse
+     */
+    void recycle() {
+        current = 0;
+        slab = slabs.get(0);
+        start = 0;
+        position = 0;
+    }
+
+    /**
+     * Bytes held by the slabs, whether used or not
+     */
+    long capacity() {
+        long capacity = 0;
+        for(byte[] slab : slabs) {
+            capacity += slab.length;
+        }
+        return capacity;
+    }
+
+    @Override
+    public void write(int b) {
+        ensure(1);
+        slab[position++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b) {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensure(len);
+        System.arraycopy(b, off, slab, position, len);
+        position += len;
+    }
+
+    @Override
+    public int size() {
+        return length();
+    }
+
+    @Override
+    public void reset() {
+        position = start;
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        return Arrays.copyOfRange(slab, start, position);
+    }
+
+    /**
+     * Moves the Preon being written to the next slab if the current one can't take another bytes more
+     */
+    private void ensure(int bytes) {
+        if(position + bytes <= slab.length) {
+            return;
+        }
+        int written = position - start;
+        int needed = written + bytes;
+
+        byte[] next = current + 1 < slabs.size()? slabs.get(current + 1) : null;
+        if(next == null || next.length < needed) {
+            // Keep any smaller slab for later rather than dropping it
+            next = new byte[Math.max(slabSize, needed)];
+            slabs.add(current + 1, next);
+        }
+        System.arraycopy(slab, start, next, 0, written);
+
+        current++;
+        slab = next;
+        start = 0;
+        position = written;
+    }
+
+}
@@ -0,0 +1,106 @@
+package arena;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import biz.c24.io.api.data.preon.PreonDataObject;
+
+/**
+ * The Preons converted by a BatchPreonConverter, in the same order as the CDOs they came from.
+ *
+ * The Preons read exactly as those from toPreon() do, but share their arena's slabs rather than each having
+ * an array of its own. getPreonData() therefore returns the whole slab, so use length(i) rather than
+ * getPreonData().length - getBufferOffset() for the size of a Preon's data, and detach(i) for a Preon that
+ * can be stored with PreonStore or kept after the batch is released.
+ *
+ * Call release() once the batch is no longer needed to hand its arenas back for the next batch. None of
+ * its Preons may be used after that.
+ *
+ */
+public final class PreonBatch<P extends PreonDataObject> extends AbstractList<P> implements RandomAccess {
+
+    private final BatchPreonConverter<?, P> converter;
+    private final Object[] preons;
+    private final int[] lengths;
+    private final List<PreonArena> arenas;
+
+    private volatile boolean released;
+
+    PreonBatch(BatchPreonConverter<?, P> converter, Object[] preons, int[] lengths, List<PreonArena> arenas) {
+        this.converter = converter;
+        this.preons = preons;
+        this.lengths = lengths;
+        this.arenas = arenas;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public P get(int index) {
+        checkNotReleased();
+        return (P) preons[index];
+    }
+
+    @Override
+    public int size() {
+        return preons.length;
+    }
+
+    /**
+     * The number of bytes of Preon data for the Preon at index
+     */
+    public int length(int index) {
+        return lengths[index];
+    }
+
+    /**
+     * A copy of the Preon at index with its own array, just as toPreon() would have produced
+     */
+    public P detach(int index) {
+        P preon = get(index);
+        int offset = preon.getBufferOffset();
+        byte[] data = Arrays.copyOfRange(preon.getPreonData(), offset, offset + lengths[index]);
+        return converter.allocate(data, 0);
+    }
+
+    /**
+     * Bytes of Preon data in the batch
+     */
+    public long getBytes() {
+        long bytes = 0;
+        for(int length : lengths) {
+            bytes += length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Bytes held by the batch's arenas, including the unused ends of their slabs
+     */
+    public long getFootprint() {
+        long footprint = 0;
+        for(PreonArena arena : arenas) {
+            footprint += arena.capacity();
+        }
+        return footprint;
+    }
+
+    /**
+     * Returns the batch's arenas to its converter for reuse
+     */
+    public synchronized void release() {
+        if(!released) {
+            released = true;
+            Arrays.fill(preons, null);
+            converter.release(arenas);
+        }
+    }
+
+    private void checkNotReleased() {
+        if(released) {
+            throw new IllegalStateException("The batch has been released");
+        }
+    }
+
+}
@@ -0,0 +1,326 @@
+package cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import utils.PreonUtils;
+import biz.c24.io.api.C24;
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.data.ValidationException;
+import biz.c24.io.api.data.preon.PreonDataObject;
+
+/**
+ * Holds parsed and validated documents as Preons, so that re-reading an unchanged file costs neither a
+ * parse nor a validation.
+ *
+ * Entries are keyed by canonical path and are only used while the file's version - its modification
+ * time and length, or a hash of its content - still matches. The cache is bounded by the total size of
+ * the Preons it holds and evicts the least recently used entries first. When several threads miss on the
+ * same file at once, one of them loads it and the others wait for its result. A load is only cached if the
+ * file still has the version it was loaded from.
+ *
+ * Preons are read-only and can be shared freely between threads; use getCdo() for a private, mutable copy.
+ *
+ */
+public class PreonCache<T extends PreonDataObject> {
+
+    /**
+     * Parses, validates and converts a file to the Preon to be cached
+     */
+    public interface Loader<T> {
+        T load(File file) throws IOException, ValidationException;
+    }
+
+    public static final Loader<biz.c24.io.gettingstarted.customer.preon.CustomersFile> CUSTOMERS_FILE =
+        new Loader<biz.c24.io.gettingstarted.customer.preon.CustomersFile>() {
+
+            @Override
+            public biz.c24.io.gettingstarted.customer.preon.CustomersFile load(File file) throws IOException, ValidationException {
+                biz.c24.io.gettingstarted.customer.CustomersFile cdo = C24.parse(biz.c24.io.gettingstarted.customer.CustomersFile.class).from(file);
+                return C24.validate(cdo).toPreon();
+            }
+        };
+
+    /**
+     * How to tell whether a file has changed since it was cached
+     */
+    public enum Versioning {
+
+        /**
+         * Modification time and length. Cheap, but misses rewrites within the filesystem's timestamp resolution.
+         */
+        MODIFICATION_TIME,
+
+        /**
+         * SHA-1 of the content. Reads the whole file on every lookup, though that's still far cheaper than a parse.
+         */
+        CONTENT_HASH
+    }
+
+    private final Loader<T> loader;
+    private final Versioning versioning;
+    private final long maxBytes;
+
+    // Guarded by itself; iteration order is least to most recently used
+    private final LinkedHashMap<String, Entry<T>> entries = new LinkedHashMap<String, Entry<T>>(16, 0.75f, true);
+    private long bytes;
+
+    private final ConcurrentMap<String, FutureTask<Entry<T>>> loading = new ConcurrentHashMap<String, FutureTask<Entry<T>>>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public PreonCache(Loader<T> loader, long maxBytes) {
+        this(loader, maxBytes, Versioning.MODIFICATION_TIME);
+    }
+
+    public PreonCache(Loader<T> loader, long maxBytes, Versioning versioning) {
+        this.loader = loader;
+        this.maxBytes = maxBytes;
+        this.versioning = versioning;
+    }
+
+    private static class Entry<T> {
+
+        final String version;
+        final T preon;
+        final long size;
+
+        Entry(String version, T preon, long size) {
+            this.version = version;
+            this.preon = preon;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Returns the cached Preon for the current version of file, loading it if necessary
+     */
+    public T get(File file) throws IOException, ValidationException {
+
+        final String path = file.getCanonicalPath();
+        final String version = versionOf(file);
+
+        synchronized(entries) {
+            Entry<T> entry = entries.get(path);
+            if(entry != null && entry.version.equals(version)) {
+                hits.incrementAndGet();
+                return entry.preon;
+            }
+        }
+
+        // Only one thread loads any given version of a file
+        String key = path + '\u0000' + version;
+        final File canonical = new File(path);
+        FutureTask<Entry<T>> load = new FutureTask<Entry<T>>(new Callable<Entry<T>>() {
+
+            @Override
+            public Entry<T> call() throws Exception {
+                T preon = loader.load(canonical);
+                return new Entry<T>(version, preon, PreonUtils.sizeOf(preon));
+            }
+        });
+        FutureTask<Entry<T>> existing = loading.putIfAbsent(key, load);
+        if(existing == null) {
+            try {
+                // Another thread may have loaded and cached this version since we looked
+                synchronized(entries) {
+                    Entry<T> entry = entries.get(path);
+                    if(entry != null && entry.version.equals(version)) {
+                        hits.incrementAndGet();
+                        return entry.preon;
+                    }
+                }
+                misses.incrementAndGet();
+                load.run();
+                Entry<T> entry = await(load);
+                put(canonical, path, entry);
+                return entry.preon;
+            } finally {
+                loading.remove(key, load);
+            }
+        } else {
+            coalesced.incrementAndGet();
+            return await(existing).preon;
+        }
+    }
+
+    /**
+     * Returns a new, mutable CDO copy of the document. The conversion is done on every call and only
+     * when asked for, so callers who only read should prefer get().
+     */
+    public <C extends ComplexDataObject> C getCdo(File file) throws IOException, ValidationException {
+        return C24.<C>toCdo(get(file));
+    }
+
+    public void invalidate(File file) throws IOException {
+        synchronized(entries) {
+            Entry<T> entry = entries.remove(file.getCanonicalPath());
+            if(entry != null) {
+                bytes -= entry.size;
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized(entries) {
+            entries.clear();
+            bytes = 0;
+        }
+    }
+
+    private void put(File file, String path, Entry<T> entry) throws IOException {
+        // The file may have changed while it was loading, and a load of the newer version may already have
+        // been cached. Hashing a large file under the lock would stall every hit, so the version is read
+        // outside it; re-checking the cheap modification time and length under the lock then ensures the
+        // file hasn't changed since, so an older version can never replace a newer one.
+        String modified = modificationStamp(file);
+        String current = versioning == Versioning.MODIFICATION_TIME? modified : versionOf(file);
+        synchronized(entries) {
+            if(!entry.version.equals(current) || !modified.equals(modificationStamp(file))) {
+                return;
+            }
+            Entry<T> replaced = entries.get(path);
+            if(replaced != null && replaced.version.equals(entry.version)) {
+                // A slower load of the same version has already been cached
+                return;
+            }
+            if(replaced != null) {
+                entries.remove(path);
+                bytes -= replaced.size;
+            }
+            if(entry.size > maxBytes) {
+                // Too large to ever fit; the caller still gets it, but it isn't kept
+                evictions.incrementAndGet();
+                return;
+            }
+            entries.put(path, entry);
+            bytes += entry.size;
+
+            Iterator<Map.Entry<String, Entry<T>>> lru = entries.entrySet().iterator();
+            while(bytes > maxBytes) {
+                Entry<T> eldest = lru.next().getValue();
+                lru.remove();
+                bytes -= eldest.size;
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private static String modificationStamp(File file) {
+        return file.lastModified() + ":" + file.length();
+    }
+
+    private String versionOf(File file) throws IOException {
+        if(versioning == Versioning.MODIFICATION_TIME) {
+            return modificationStamp(file);
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            InputStream in = new FileInputStream(file);
+            try {
+                byte[] buffer = new byte[64 * 1024];
+                for(int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                    digest.update(buffer, 0, read);
+                }
+            } finally {
+                in.close();
+            }
+            StringBuilder hex = new StringBuilder();
+            for(byte b : digest.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch(NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static <T> T await(FutureTask<T> task) throws IOException, ValidationException {
+        boolean interrupted = false;
+        try {
+            while(true) {
+                try {
+                    return task.get();
+                } catch(InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+        } catch(ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if(cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if(cause instanceof ValidationException) {
+                throw (ValidationException) cause;
+            } else if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            if(interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Lookups which loaded the file themselves
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Lookups which missed while another thread was already loading the same file, and waited for it
+     */
+    public long getCoalescedMisses() {
+        return coalesced.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public int getEntries() {
+        synchronized(entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Total size of the cached Preons
+     */
+    public long getBytes() {
+        synchronized(entries) {
+            return bytes;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + getHits() + " misses=" + getMisses() + " coalesced=" + getCoalescedMisses() + " evictions=" + getEvictions()
+             + " entries=" + getEntries() + " bytes=" + getBytes() + "/" + maxBytes;
+    }
+
+}
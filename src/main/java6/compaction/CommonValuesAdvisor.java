@@ -0,0 +1,312 @@
+package compaction;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import utils.PreonUtils;
+import biz.c24.io.api.C24;
+import biz.c24.io.api.data.ValidationException;
+import biz.c24.io.api.data.preon.util.PreonContext;
+import biz.c24.io.api.presentation.stream.FastByteArrayOutputStream;
+import biz.c24.io.gettingstarted.customer.Address;
+import biz.c24.io.gettingstarted.customer.Customer;
+import biz.c24.io.gettingstarted.customer.CustomersFile;
+
+/**
+ * Works out which values are worth declaring as Common Values in the Customers model, based on a corpus
+ * of real documents rather than guesswork.
+ *
+ * Each Customer is written as a Preon with a PreonContext that records the bytes spent on every element,
+ * the same information toPreonWithContext() captures for PreonContextTextualWriter. Frequent values are
+ * then ranked by the bytes they'd save if they were written as a Common Value reference instead. The size
+ * of a reference is measured from the existing Common Values, such as London in Address Line.
+ *
+ * Alongside the per-field figures the advisor totals the source, Preon and (optionally) CDO heap size of
+ * the corpus. writeReport() produces an XML report whose commonValues blocks can be pasted into the
+ * matching elements of src/main/C24/Customers.dod.
+ *
+ * An advisor is not thread-safe.
+ *
+ */
+public class CommonValuesAdvisor {
+
+    // Used when no existing Common Value has been seen to measure a reference against
+    private static final int DEFAULT_REFERENCE_BYTES = 1;
+
+    private static final Comparator<FieldProfile> BY_SIZE = new Comparator<FieldProfile>() {
+
+        @Override
+        public int compare(FieldProfile a, FieldProfile b) {
+            return a.getBytes() == b.getBytes()? 0 : a.getBytes() > b.getBytes()? -1 : 1;
+        }
+    };
+
+    private final boolean measureHeap;
+    private final int maxDistinct;
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    // Keyed by type and element name, in the order first written
+    private final Map<String, FieldProfile> fields = new LinkedHashMap<String, FieldProfile>();
+    private final Map<String, String[]> commonValues = new LinkedHashMap<String, String[]>();
+
+    private long documents;
+    private long records;
+    private long sourceBytes;
+    private long preonBytes;
+    private long cdoHeapBytes;
+
+    public CommonValuesAdvisor() {
+        this(false, 10000);
+    }
+
+    /**
+     * @param measureHeap whether to measure the heap retained by each parsed CDO. This forces several
+     *        full GCs per document so is only suitable for modest corpora.
+     * @param maxDistinct the most different values to count for each element
+     */
+    public CommonValuesAdvisor(boolean measureHeap, int maxDistinct) {
+        this.measureHeap = measureHeap;
+        this.maxDistinct = maxDistinct;
+        commonValues("Address", "Address Line", biz.c24.io.gettingstarted.customer.preon.Address.AddressLineCommonValues);
+    }
+
+    /**
+     * Declares the Common Values an element already has, so they're not suggested again and references
+     * to them can be measured
+     */
+    public CommonValuesAdvisor commonValues(String type, String element, String... values) {
+        commonValues.put(key(type, element), values.clone());
+        return this;
+    }
+
+    /**
+     * Parses, validates and profiles a Customers file
+     */
+    public void add(File file) throws IOException, ValidationException {
+        long before = measureHeap? usedHeap() : 0;
+        CustomersFile customers = C24.parse(CustomersFile.class).from(file);
+        if(measureHeap) {
+            cdoHeapBytes += Math.max(0, usedHeap() - before);
+        }
+
+        // Preons can't be created from invalid CDOs
+        C24.validate(customers);
+        add(customers);
+        sourceBytes += PreonUtils.sizeOf(file);
+    }
+
+    /**
+     * Profiles an already validated Customers file
+     */
+    public void add(CustomersFile file) throws IOException {
+        for(Customer customer : file.getCustomer()) {
+            add(customer);
+        }
+        preonBytes += PreonUtils.sizeOf(file.toPreon());
+        documents++;
+    }
+
+    /**
+     * Profiles a single validated Customer
+     */
+    public void add(Customer customer) throws IOException {
+        customer.writePreon(new FastByteArrayOutputStream(256), new RecordingContext("Customer"));
+
+        // Nested types are written with their own context, so profile them separately
+        Address address = customer.getAddress();
+        if(address != null) {
+            address.writePreon(new FastByteArrayOutputStream(128), new RecordingContext("Address"));
+        }
+        records++;
+    }
+
+    /**
+     * Every element seen so far, largest first
+     */
+    public List<FieldProfile> getFields() {
+        List<FieldProfile> sorted = new ArrayList<FieldProfile>(fields.values());
+        Collections.sort(sorted, BY_SIZE);
+        return sorted;
+    }
+
+    /**
+     * The size of a Common Value reference, taken from the smallest average across the elements which
+     * already have Common Values
+     */
+    public int getReferenceBytes() {
+        int reference = -1;
+        for(FieldProfile field : fields.values()) {
+            int bytes = field.getReferenceBytes();
+            if(bytes > 0 && (reference < 0 || bytes < reference)) {
+                reference = bytes;
+            }
+        }
+        return reference < 0? DEFAULT_REFERENCE_BYTES : reference;
+    }
+
+    public long getDocuments() {
+        return documents;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public long getSourceBytes() {
+        return sourceBytes;
+    }
+
+    public long getPreonBytes() {
+        return preonBytes;
+    }
+
+    /**
+     * Heap retained by the parsed CDOs, or 0 unless the advisor was created to measure it
+     */
+    public long getCdoHeapBytes() {
+        return cdoHeapBytes;
+    }
+
+    /**
+     * Writes the corpus totals and, for each element, its Preon bytes and the Common Values to declare.
+     *
+     * Each commonValues block lists the existing values followed by the recommended ones, so it can replace
+     * the block in the .dod as it stands. The candidates alongside it give the evidence for each suggestion.
+     *
+     * @param minOccurrences values seen fewer times than this are never recommended
+     * @param maxCandidates the most values to recommend for each element
+     */
+    public void writeReport(OutputStream out, int minOccurrences, int maxCandidates) throws IOException {
+        int referenceBytes = getReferenceBytes();
+        try {
+            XMLStreamWriter xml = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+            xml.writeStartDocument("UTF-8", "1.0");
+            xml.writeCharacters("\n");
+            xml.writeStartElement("compactionReport");
+            xml.writeAttribute("documents", Long.toString(documents));
+            xml.writeAttribute("records", Long.toString(records));
+            xml.writeAttribute("sourceBytes", Long.toString(sourceBytes));
+            xml.writeAttribute("preonBytes", Long.toString(preonBytes));
+            if(measureHeap) {
+                xml.writeAttribute("cdoHeapBytes", Long.toString(cdoHeapBytes));
+            }
+            xml.writeAttribute("referenceBytes", Integer.toString(referenceBytes));
+
+            for(FieldProfile field : getFields()) {
+                List<FieldProfile.Candidate> candidates = field.getCandidates(referenceBytes, minOccurrences, maxCandidates);
+                long savedBytes = 0;
+                for(FieldProfile.Candidate candidate : candidates) {
+                    savedBytes += candidate.getSavedBytes();
+                }
+
+                xml.writeCharacters("\n  ");
+                xml.writeStartElement("field");
+                xml.writeAttribute("type", field.getType());
+                xml.writeAttribute("element", field.getElement());
+                xml.writeAttribute("occurrences", Long.toString(field.getOccurrences()));
+                xml.writeAttribute("preonBytes", Long.toString(field.getBytes()));
+                xml.writeAttribute("distinctValues", field.getDistinctValues() + (field.isTruncated()? "+" : ""));
+                xml.writeAttribute("commonValueHits", Long.toString(field.getCommonValueHits()));
+                xml.writeAttribute("savedBytes", Long.toString(savedBytes));
+
+                if(!candidates.isEmpty()) {
+                    xml.writeCharacters("\n    ");
+                    xml.writeStartElement("commonValues");
+                    writeValues(xml, field.getCommonValues());
+                    for(FieldProfile.Candidate candidate : candidates) {
+                        xml.writeCharacters("\n      ");
+                        xml.writeStartElement("value");
+                        xml.writeCharacters(candidate.getValue());
+                        xml.writeEndElement();
+                    }
+                    xml.writeCharacters("\n    ");
+                    xml.writeEndElement();
+
+                    for(FieldProfile.Candidate candidate : candidates) {
+                        xml.writeCharacters("\n    ");
+                        xml.writeEmptyElement("candidate");
+                        xml.writeAttribute("value", candidate.getValue());
+                        xml.writeAttribute("occurrences", Long.toString(candidate.getOccurrences()));
+                        xml.writeAttribute("preonBytes", Long.toString(candidate.getBytes()));
+                        xml.writeAttribute("savedBytes", Long.toString(candidate.getSavedBytes()));
+                    }
+                    xml.writeCharacters("\n  ");
+                }
+                xml.writeEndElement();
+            }
+
+            xml.writeCharacters("\n");
+            xml.writeEndElement();
+            xml.writeCharacters("\n");
+            xml.writeEndDocument();
+            xml.flush();
+        } catch(XMLStreamException xsEx) {
+            throw new IOException("Failed to write compaction report", xsEx);
+        }
+    }
+
+    private static void writeValues(XMLStreamWriter xml, Collection<String> values) throws XMLStreamException {
+        for(String value : values) {
+            xml.writeCharacters("\n      ");
+            xml.writeStartElement("value");
+            xml.writeCharacters(value);
+            xml.writeEndElement();
+        }
+    }
+
+    private long usedHeap() {
+        // A few passes give finalizers and reference processing the chance to settle
+        for(int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private FieldProfile field(String type, String element) {
+        String key = key(type, element);
+        FieldProfile field = fields.get(key);
+        if(field == null) {
+            field = new FieldProfile(type, element, commonValues.get(key), maxDistinct);
+            fields.put(key, field);
+        }
+        return field;
+    }
+
+    private static String key(String type, String element) {
+        return type + '/' + element;
+    }
+
+    /**
+     * Attributes each entry the generated writePreon() code reports to the element of the given type
+     */
+    private class RecordingContext extends PreonContext {
+
+        private final String type;
+
+        RecordingContext(String type) {
+            super(type, null);
+            this.type = type;
+        }
+
+        @Override
+        public void add(String name, Object value, int length) {
+            super.add(name, value, length);
+            field(type, name).record(value, length);
+        }
+    }
+
+}
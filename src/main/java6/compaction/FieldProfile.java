@@ -0,0 +1,205 @@
+package compaction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What one element of a model costs in the Preons written for a corpus, and how often each of its values
+ * occurs.
+ *
+ * Elements are identified the way the .dod identifies them - by the name of the complex type they belong
+ * to and their own name - so that the advice can be applied directly to the model. Only String values are
+ * candidates for Common Values; other entries such as the presence bitmap are counted towards the bytes
+ * but never suggested.
+ *
+ * To bound memory on a large corpus only the first maxDistinct different values of a field are counted
+ * individually. Later values are still included in the totals but can't become candidates, which loses
+ * nothing for the fields where Common Values help since their frequent values show up early.
+ *
+ */
+public class FieldProfile {
+
+    /**
+     * A value which would save space if it were added to the element's Common Values
+     */
+    public static class Candidate {
+
+        private final String value;
+        private final long occurrences;
+        private final long bytes;
+        private final long savedBytes;
+
+        Candidate(String value, long occurrences, long bytes, int referenceBytes) {
+            this.value = value;
+            this.occurrences = occurrences;
+            this.bytes = bytes;
+            this.savedBytes = bytes - occurrences * referenceBytes;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public long getOccurrences() {
+            return occurrences;
+        }
+
+        /**
+         * Preon bytes currently spent on this value across the corpus
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Preon bytes the corpus would shrink by if every occurrence became a Common Value reference
+         */
+        public long getSavedBytes() {
+            return savedBytes;
+        }
+    }
+
+    private static final Comparator<Candidate> BY_SAVINGS = new Comparator<Candidate>() {
+
+        @Override
+        public int compare(Candidate a, Candidate b) {
+            if(a.savedBytes != b.savedBytes) {
+                return a.savedBytes > b.savedBytes? -1 : 1;
+            }
+            return a.value.compareTo(b.value);
+        }
+    };
+
+    private final String type;
+    private final String element;
+    private final Set<String> commonValues;
+    private final int maxDistinct;
+
+    private long occurrences;
+    private long bytes;
+    private long commonValueHits;
+    private long commonValueBytes;
+
+    // Value -> {occurrences, bytes}
+    private final Map<String, long[]> values = new HashMap<String, long[]>();
+    private boolean truncated;
+
+    FieldProfile(String type, String element, String[] commonValues, int maxDistinct) {
+        this.type = type;
+        this.element = element;
+        this.commonValues = commonValues == null? Collections.<String>emptySet() : new LinkedHashSet<String>(Arrays.asList(commonValues));
+        this.maxDistinct = maxDistinct;
+    }
+
+    void record(Object value, int length) {
+        occurrences++;
+        bytes += length;
+
+        if(value instanceof String) {
+            String string = (String) value;
+            if(commonValues.contains(string)) {
+                commonValueHits++;
+                commonValueBytes += length;
+            } else {
+                long[] counts = values.get(string);
+                if(counts == null) {
+                    if(values.size() == maxDistinct) {
+                        truncated = true;
+                        return;
+                    }
+                    counts = new long[2];
+                    values.put(string, counts);
+                }
+                counts[0]++;
+                counts[1] += length;
+            }
+        }
+    }
+
+    /**
+     * Name of the complex type in the .dod which declares this element
+     */
+    public String getType() {
+        return type;
+    }
+
+    public String getElement() {
+        return element;
+    }
+
+    public long getOccurrences() {
+        return occurrences;
+    }
+
+    /**
+     * Preon bytes spent on this element across the corpus
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Common Values already declared for this element in the model
+     */
+    public Set<String> getCommonValues() {
+        return Collections.unmodifiableSet(commonValues);
+    }
+
+    /**
+     * How many occurrences were written as a reference to one of the existing Common Values
+     */
+    public long getCommonValueHits() {
+        return commonValueHits;
+    }
+
+    /**
+     * The average size of a Common Value reference in this element, or -1 if none were written
+     */
+    public int getReferenceBytes() {
+        return commonValueHits == 0? -1 : (int) ((commonValueBytes + commonValueHits - 1) / commonValueHits);
+    }
+
+    /**
+     * Number of different values seen, excluding existing Common Values
+     */
+    public int getDistinctValues() {
+        return values.size();
+    }
+
+    /**
+     * Whether the element had more than maxDistinct different values, in which case only the first were counted
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * The values which would save the most space as Common Values, best first
+     *
+     * @param referenceBytes the size of a Common Value reference
+     * @param minOccurrences values seen fewer times than this aren't worth adding to the model
+     * @param max the most candidates to return
+     */
+    public List<Candidate> getCandidates(int referenceBytes, int minOccurrences, int max) {
+        List<Candidate> candidates = new ArrayList<Candidate>();
+        for(Map.Entry<String, long[]> entry : values.entrySet()) {
+            long[] counts = entry.getValue();
+            if(counts[0] >= minOccurrences) {
+                Candidate candidate = new Candidate(entry.getKey(), counts[0], counts[1], referenceBytes);
+                if(candidate.savedBytes > 0) {
+                    candidates.add(candidate);
+                }
+            }
+        }
+        Collections.sort(candidates, BY_SAVINGS);
+        return candidates.size() > max? new ArrayList<Candidate>(candidates.subList(0, max)) : candidates;
+    }
+
+}
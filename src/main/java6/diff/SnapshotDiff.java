@@ -0,0 +1,352 @@
+package diff;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import store.PreonStore;
+import streaming.CustomerStreamer;
+import streaming.RecordHandler;
+import biz.c24.io.gettingstarted.customer.preon.Customer;
+
+/**
+ * Compares two snapshots of a Customers file, matching Customers on CustomerNumber, and reports those
+ * which have been added, removed or changed.
+ *
+ * Both files are streamed a Customer at a time and each Customer is written as a Preon, along with a
+ * hash of its bytes, to one of a number of partition files chosen by its CustomerNumber. The partitions
+ * are then compared one pair at a time: only the CustomerNumbers, hashes and file offsets of one
+ * partition of the previous snapshot, and the CustomerNumbers of the matching partition of the current
+ * one, are held in memory, so memory is bounded by the partition size rather than by the size of either
+ * file. An unchanged Customer costs a map lookup and a hash comparison; its bytes are skipped over unread.
+ *
+ * Changes are reported partition by partition, not in file order. CustomerNumbers must be unique within
+ * a snapshot, as there would be no telling which of two Customers with the same number had changed;
+ * diff() throws an IOException naming the first duplicate it finds. Hashes are 64 bits, so the chance of
+ * a change going unnoticed is negligible.
+ *
+ */
+public class SnapshotDiff {
+
+    /**
+     * Receives the differences between two snapshots
+     */
+    public interface Handler {
+
+        void added(Customer customer) throws Exception;
+
+        void removed(Customer customer) throws Exception;
+
+        void changed(Customer previous, Customer current) throws Exception;
+    }
+
+    public static class Counts {
+
+        private long added;
+        private long removed;
+        private long changed;
+        private long unchanged;
+
+        public long getAdded() {
+            return added;
+        }
+
+        public long getRemoved() {
+            return removed;
+        }
+
+        public long getChanged() {
+            return changed;
+        }
+
+        public long getUnchanged() {
+            return unchanged;
+        }
+
+        @Override
+        public String toString() {
+            return "added=" + added + " removed=" + removed + " changed=" + changed + " unchanged=" + unchanged;
+        }
+    }
+
+    private final File workDirectory;
+    private final int partitions;
+
+    /**
+     * Sizes the partitions so that one partition of index entries uses a small fraction of the heap
+     */
+    public SnapshotDiff(File workDirectory) {
+        this(workDirectory, 0);
+    }
+
+    /**
+     * @param partitions the number of partitions to split each snapshot into, or 0 to size them from the
+     * previous snapshot and the maximum heap size
+     */
+    public SnapshotDiff(File workDirectory, int partitions) {
+        this.workDirectory = workDirectory;
+        this.partitions = partitions;
+    }
+
+    public Counts diff(File previous, File current, Handler handler) throws IOException {
+
+        // Allow for around 150 bytes of index per Customer, against 500 or more bytes of XML, keeping each
+        // partition's index to a few percent of the heap
+        int count = partitions > 0? partitions : (int) Math.min(512, Math.max(16, 4 * previous.length() / Runtime.getRuntime().maxMemory()));
+
+        File directory = new File(workDirectory, "snapshot-diff-" + System.nanoTime());
+        directory.mkdirs();
+        try {
+            File[] before = partition(previous, new File(directory, "previous"), count);
+            File[] after = partition(current, new File(directory, "current"), count);
+
+            Counts counts = new Counts();
+            for(int i = 0; i < count; i++) {
+                compare(before[i], after[i], handler, counts);
+                before[i].delete();
+                after[i].delete();
+            }
+            return counts;
+        } finally {
+            deleteAll(directory);
+        }
+    }
+
+    /**
+     * Where a Customer from the previous snapshot lies in its partition file
+     */
+    private static class Entry {
+
+        final long hash;
+        final long offset;
+        final int length;
+        boolean matched;
+
+        Entry(long hash, long offset, int length) {
+            this.hash = hash;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private void compare(File before, File after, Handler handler, Counts counts) throws IOException {
+
+        Map<String, Entry> previous = new HashMap<String, Entry>();
+        DataInputStream in = open(before);
+        try {
+            long offset = 0;
+            while(true) {
+                String key;
+                try {
+                    key = in.readUTF();
+                } catch(EOFException ex) {
+                    break;
+                }
+                long hash = in.readLong();
+                int length = in.readInt();
+                // readUTF's two byte length prefix plus modified UTF-8, which is plain ASCII for our keys
+                offset += 2 + utfLength(key) + 12;
+                if(previous.put(key, new Entry(hash, offset, length)) != null) {
+                    throw duplicate(key, "previous");
+                }
+                skipFully(in, length);
+                offset += length;
+            }
+        } finally {
+            in.close();
+        }
+
+        Set<String> seen = new HashSet<String>();
+        RandomAccessFile beforeBytes = new RandomAccessFile(before, "r");
+        try {
+            in = open(after);
+            try {
+                while(true) {
+                    String key;
+                    try {
+                        key = in.readUTF();
+                    } catch(EOFException ex) {
+                        break;
+                    }
+                    long hash = in.readLong();
+                    int length = in.readInt();
+                    if(!seen.add(key)) {
+                        throw duplicate(key, "current");
+                    }
+
+                    Entry entry = previous.get(key);
+                    if(entry != null && entry.hash == hash && entry.length == length) {
+                        entry.matched = true;
+                        counts.unchanged++;
+                        skipFully(in, length);
+                    } else {
+                        byte[] bytes = new byte[length];
+                        in.readFully(bytes);
+                        Customer customer = PreonStore.CUSTOMER.create(bytes);
+                        if(entry == null) {
+                            counts.added++;
+                            handle(handler, null, customer);
+                        } else {
+                            entry.matched = true;
+                            counts.changed++;
+                            handle(handler, read(beforeBytes, entry), customer);
+                        }
+                    }
+                }
+            } finally {
+                in.close();
+            }
+
+            // Whatever is left has been removed; read it back in file order
+            List<Entry> removed = new ArrayList<Entry>();
+            for(Entry entry : previous.values()) {
+                if(!entry.matched) {
+                    removed.add(entry);
+                }
+            }
+            Collections.sort(removed, new Comparator<Entry>() {
+
+                @Override
+                public int compare(Entry a, Entry b) {
+                    return a.offset < b.offset? -1 : a.offset == b.offset? 0 : 1;
+                }
+            });
+            for(Entry entry : removed) {
+                counts.removed++;
+                handle(handler, read(beforeBytes, entry), null);
+            }
+        } finally {
+            beforeBytes.close();
+        }
+    }
+
+    private static IOException duplicate(String key, String snapshot) {
+        return new IOException("Customer Number " + key + " appears more than once in the " + snapshot + " snapshot");
+    }
+
+    private static void handle(Handler handler, Customer previous, Customer current) throws IOException {
+        try {
+            if(previous == null) {
+                handler.added(current);
+            } else if(current == null) {
+                handler.removed(previous);
+            } else {
+                handler.changed(previous, current);
+            }
+        } catch(IOException ex) {
+            throw ex;
+        } catch(RuntimeException ex) {
+            throw ex;
+        } catch(Exception ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Streams file into partition files of [CustomerNumber][hash][length][Preon bytes]
+     */
+    private static File[] partition(File file, File directory, final int count) throws IOException {
+
+        directory.mkdirs();
+        final File[] files = new File[count];
+        final DataOutputStream[] out = new DataOutputStream[count];
+        try {
+            for(int i = 0; i < count; i++) {
+                files[i] = new File(directory, i + ".part");
+                out[i] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(files[i]), 16 * 1024));
+            }
+
+            CustomerStreamer.streamPreons(file, new RecordHandler<Customer>() {
+
+                @Override
+                public void handle(Customer customer) throws IOException {
+                    String key = customer.getCustomerNumber();
+                    byte[] data = customer.getPreonData();
+                    int offset = customer.getBufferOffset();
+                    int length = data.length - offset;
+
+                    DataOutputStream partition = out[(key.hashCode() & Integer.MAX_VALUE) % count];
+                    partition.writeUTF(key);
+                    partition.writeLong(hash(data, offset, length));
+                    partition.writeInt(length);
+                    partition.write(data, offset, length);
+                }
+            });
+        } finally {
+            for(DataOutputStream stream : out) {
+                if(stream != null) {
+                    stream.close();
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * 64 bit FNV-1a
+     */
+    static long hash(byte[] data, int offset, int length) {
+        long hash = 0xcbf29ce484222325L;
+        for(int i = offset, end = offset + length; i < end; i++) {
+            hash ^= data[i] & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static Customer read(RandomAccessFile file, Entry entry) throws IOException {
+        byte[] bytes = new byte[entry.length];
+        file.seek(entry.offset);
+        file.readFully(bytes);
+        return PreonStore.CUSTOMER.create(bytes);
+    }
+
+    private static DataInputStream open(File file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+    }
+
+    private static void skipFully(DataInputStream in, int length) throws IOException {
+        while(length > 0) {
+            int skipped = in.skipBytes(length);
+            if(skipped <= 0) {
+                throw new EOFException();
+            }
+            length -= skipped;
+        }
+    }
+
+    private static int utfLength(String str) {
+        int length = 0;
+        for(int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            length += c >= 0x0001 && c <= 0x007F? 1 : c > 0x07FF? 3 : 2;
+        }
+        return length;
+    }
+
+    private static void deleteAll(File file) {
+        File[] children = file.listFiles();
+        if(children != null) {
+            for(File child : children) {
+                deleteAll(child);
+            }
+        }
+        file.delete();
+    }
+
+}
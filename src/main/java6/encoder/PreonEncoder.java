@@ -0,0 +1,342 @@
+package encoder;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import biz.c24.io.gettingstarted.contact.preon.ContactDetailsFile;
+import biz.c24.io.gettingstarted.customer.preon.Address;
+import biz.c24.io.gettingstarted.customer.preon.Customer;
+import biz.c24.io.gettingstarted.customer.preon.CustomersFile;
+
+/**
+ * Writes Preon CustomersFiles and ContactDetailsFiles as UTF-8 JSON or XML directly into a ByteBuffer.
+ *
+ * Unlike C24.write this bypasses the general purpose Sinks: every tag is pre-encoded once and field values
+ * are escaped and encoded character by character straight into the buffer. Values listed as Common Values
+ * in the model (e.g. London in AddressLine) are copied from a table of pre-encoded bytes instead, which
+ * skips the escaping and encoding though not the String the getter has already built. Records are read in
+ * one pass over each List, as getCustomer(i) would walk the file from the start for every record. The
+ * buffer is drained to the channel whenever it fills, and is reused between calls, so the per-record
+ * allocation left is the Preon objects and Strings the getters return.
+ *
+ * An encoder holds its own buffer and so must not be shared between threads.
+ *
+ */
+public class PreonEncoder {
+
+    public enum Format { JSON, XML }
+
+    private static final String CUSTOMER_NS = "http://www.c24.biz/io/GettingStarted/Customer";
+    private static final String CONTACT_NS = "http://www.c24.biz/io/GettingStarted/Contact";
+
+    private static final String[] CUSTOMER_FIELDS = {
+        "CustomerNumber", "CustomerAcronym", "Address", "PostZipCode", "TelephoneNumber", "EmailAddress", "BIC", "FaxNumber",
+        "TelexNumber", "CountryOfResidence", "FedwireCode", "ChipsParticipantCode", "ChipsUID", "SortCode", "BankleitzhalCode"
+    };
+
+    private final Format format;
+    private final ByteBuffer buffer;
+
+    // Pre-encoded markup, indexed as CUSTOMER_FIELDS
+    private final byte[][] openField;
+    private final byte[][] closeField;
+    private final byte[][] commonAddressLines;
+
+    private final byte[] customersFileStart;
+    private final byte[] customersFileEnd;
+    private final byte[] customerStart;
+    private final byte[] customerEnd;
+    private final byte[] addressStart;
+    private final byte[] addressEnd;
+    private final byte[] addressLineStart;
+    private final byte[] addressLineEnd;
+    private final byte[] contactFileStart;
+    private final byte[] contactFileEnd;
+    private final byte[] contactStart;
+    private final byte[] contactAttributeEnd;
+    private final byte[] contactEnd;
+    private final byte[] emailStart;
+    private final byte[] emailEnd;
+    private final byte[] telephoneStart;
+    private final byte[] telephoneEnd;
+    private final byte[] separator;
+
+    public PreonEncoder(Format format) {
+        this(format, 64 * 1024);
+    }
+
+    public PreonEncoder(Format format, int bufferSize) {
+
+        this.format = format;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+
+        openField = new byte[CUSTOMER_FIELDS.length][];
+        closeField = new byte[CUSTOMER_FIELDS.length][];
+        for(int i = 0; i < CUSTOMER_FIELDS.length; i++) {
+            String field = CUSTOMER_FIELDS[i];
+            openField[i] = bytes(format == Format.XML? "<" + field + ">" : (i == 0? "" : ",") + "\"" + field + "\":\"");
+            closeField[i] = bytes(format == Format.XML? "</" + field + ">" : "\"");
+        }
+
+        commonAddressLines = new byte[Address.AddressLineCommonValues.length][];
+        for(int i = 0; i < commonAddressLines.length; i++) {
+            commonAddressLines[i] = bytes(escaped(Address.AddressLineCommonValues[i]));
+        }
+
+        if(format == Format.XML) {
+            customersFileStart = bytes("<?xml version=\"1.0\" encoding=\"UTF-8\"?><CustomersFile xmlns=\"" + CUSTOMER_NS + "\">");
+            customersFileEnd = bytes("</CustomersFile>");
+            customerStart = bytes("<Customer>");
+            customerEnd = bytes("</Customer>");
+            addressStart = bytes("<Address>");
+            addressEnd = bytes("</Address>");
+            addressLineStart = bytes("<AddressLine>");
+            addressLineEnd = bytes("</AddressLine>");
+            contactFileStart = bytes("<?xml version=\"1.0\" encoding=\"UTF-8\"?><ContactDetailsFile xmlns=\"" + CONTACT_NS + "\">");
+            contactFileEnd = bytes("</ContactDetailsFile>");
+            contactStart = bytes("<ContactDetails customerNumber=\"");
+            contactAttributeEnd = bytes("\">");
+            contactEnd = bytes("</ContactDetails>");
+            emailStart = bytes("<EmailAddress>");
+            emailEnd = bytes("</EmailAddress>");
+            telephoneStart = bytes("<TelephoneNumber>");
+            telephoneEnd = bytes("</TelephoneNumber>");
+            separator = new byte[0];
+        } else {
+            customersFileStart = bytes("{\"CustomersFile\":{\"Customer\":[");
+            customersFileEnd = bytes("]}}");
+            customerStart = bytes("{");
+            customerEnd = bytes("}");
+            addressStart = bytes("{\"AddressLine\":[");
+            addressEnd = bytes("]}");
+            addressLineStart = bytes("\"");
+            addressLineEnd = bytes("\"");
+            contactFileStart = bytes("{\"ContactDetailsFile\":{\"ContactDetails\":[");
+            contactFileEnd = bytes("]}}");
+            contactStart = bytes("{\"customerNumber\":\"");
+            contactAttributeEnd = bytes("\"");
+            contactEnd = bytes("}");
+            emailStart = bytes(",\"EmailAddress\":\"");
+            emailEnd = bytes("\"");
+            telephoneStart = bytes(",\"TelephoneNumber\":\"");
+            telephoneEnd = bytes("\"");
+            separator = bytes(",");
+        }
+
+        // Address is written as a nested object rather than an escaped string
+        openField[2] = bytes(format == Format.XML? "" : ",\"Address\":");
+        closeField[2] = new byte[0];
+    }
+
+    public void encode(CustomersFile file, WritableByteChannel channel) throws IOException {
+
+        put(customersFileStart, channel);
+        boolean first = true;
+        for(Customer customer : file.getCustomer()) {
+            if(!first) {
+                put(separator, channel);
+            }
+            first = false;
+            encode(customer, channel);
+        }
+        put(customersFileEnd, channel);
+        flush(channel);
+    }
+
+    public void encode(Customer customer, WritableByteChannel channel) throws IOException {
+
+        put(customerStart, channel);
+        field(0, customer.getCustomerNumber(), channel);
+        field(1, customer.getCustomerAcronym(), channel);
+
+        put(openField[2], channel);
+        put(addressStart, channel);
+        boolean first = true;
+        for(String line : customer.getAddress().getAddressLine()) {
+            if(!first) {
+                put(separator, channel);
+            }
+            first = false;
+            put(addressLineStart, channel);
+            commonValue(line, channel);
+            put(addressLineEnd, channel);
+        }
+        put(addressEnd, channel);
+
+        field(3, customer.getPostZipCode(), channel);
+        field(4, customer.getTelephoneNumber(), channel);
+        field(5, customer.getEmailAddress(), channel);
+        field(6, customer.getBIC(), channel);
+        field(7, customer.getFaxNumber(), channel);
+        field(8, customer.getTelexNumber(), channel);
+        field(9, customer.getCountryOfResidence(), channel);
+        field(10, customer.getFedwireCode(), channel);
+        field(11, customer.getChipsParticipantCode(), channel);
+        field(12, customer.getChipsUID(), channel);
+        field(13, customer.getSortCode(), channel);
+        field(14, customer.getBankleitzhalCode(), channel);
+        put(customerEnd, channel);
+    }
+
+    public void encode(ContactDetailsFile file, WritableByteChannel channel) throws IOException {
+
+        put(contactFileStart, channel);
+        boolean first = true;
+        for(ContactDetailsFile.ContactDetails contact : file.getContactDetails()) {
+            if(!first) {
+                put(separator, channel);
+            }
+            first = false;
+            encode(contact, channel);
+        }
+        put(contactFileEnd, channel);
+        flush(channel);
+    }
+
+    public void encode(ContactDetailsFile.ContactDetails contact, WritableByteChannel channel) throws IOException {
+
+        put(contactStart, channel);
+        text(contact.getCustomerNumber(), channel);
+        put(contactAttributeEnd, channel);
+
+        // ContactDetails is a choice of EmailAddress or TelephoneNumber, but an unvalidated one may have neither
+        String email = contact.getEmailAddress();
+        String telephone = contact.getTelephoneNumber();
+        if(email != null) {
+            put(emailStart, channel);
+            text(email, channel);
+            put(emailEnd, channel);
+        } else if(telephone != null) {
+            put(telephoneStart, channel);
+            text(telephone, channel);
+            put(telephoneEnd, channel);
+        }
+        put(contactEnd, channel);
+    }
+
+    /**
+     * Drains anything still buffered to the channel
+     */
+    public void flush(WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void field(int field, String value, WritableByteChannel channel) throws IOException {
+        // Absent optional fields are omitted entirely
+        if(value != null) {
+            put(openField[field], channel);
+            text(value, channel);
+            put(closeField[field], channel);
+        }
+    }
+
+    private void commonValue(String value, WritableByteChannel channel) throws IOException {
+        String[] common = Address.AddressLineCommonValues;
+        for(int i = 0; i < common.length; i++) {
+            if(common[i].equals(value)) {
+                put(commonAddressLines[i], channel);
+                return;
+            }
+        }
+        text(value, channel);
+    }
+
+    private void put(byte[] bytes, WritableByteChannel channel) throws IOException {
+        if(buffer.remaining() < bytes.length) {
+            flush(channel);
+        }
+        buffer.put(bytes);
+    }
+
+    /**
+     * Escapes and UTF-8 encodes value straight into the buffer
+     */
+    private void text(String value, WritableByteChannel channel) throws IOException {
+
+        for(int i = 0; i < value.length(); i++) {
+            // Six bytes covers the longest escape and the longest UTF-8 sequence we produce
+            if(buffer.remaining() < 6) {
+                flush(channel);
+            }
+            char c = value.charAt(i);
+            if(c < 0x80) {
+                escape(c);
+            } else if(c < 0x800) {
+                buffer.put((byte) (0xc0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3f)));
+            } else if(Character.isHighSurrogate(c) && i + 1 < value.length()) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xf0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3f)));
+            } else {
+                buffer.put((byte) (0xe0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+                buffer.put((byte) (0x80 | (c & 0x3f)));
+            }
+        }
+    }
+
+    private void escape(char c) {
+        if(format == Format.XML) {
+            switch(c) {
+                case '<': put("&lt;"); return;
+                case '>': put("&gt;"); return;
+                case '&': put("&amp;"); return;
+                case '"': put("&quot;"); return;
+                default: buffer.put((byte) c); return;
+            }
+        } else {
+            switch(c) {
+                case '"': put("\\\""); return;
+                case '\\': put("\\\\"); return;
+                case '\n': put("\\n"); return;
+                case '\r': put("\\r"); return;
+                case '\t': put("\\t"); return;
+                default:
+                    if(c < 0x20) {
+                        put("\\u00");
+                        buffer.put((byte) Character.forDigit(c >> 4, 16));
+                        buffer.put((byte) Character.forDigit(c & 0xf, 16));
+                    } else {
+                        buffer.put((byte) c);
+                    }
+            }
+        }
+    }
+
+    private void put(String ascii) {
+        for(int i = 0; i < ascii.length(); i++) {
+            buffer.put((byte) ascii.charAt(i));
+        }
+    }
+
+    private String escaped(String value) {
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(format == Format.XML) {
+                sb.append(c == '<'? "&lt;" : c == '>'? "&gt;" : c == '&'? "&amp;" : c == '"'? "&quot;" : String.valueOf(c));
+            } else {
+                sb.append(c == '"'? "\\\"" : c == '\\'? "\\\\" : String.valueOf(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static byte[] bytes(String str) {
+        try {
+            return str.getBytes("UTF-8");
+        } catch(UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+}
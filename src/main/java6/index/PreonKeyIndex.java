@@ -0,0 +1,199 @@
+package index;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.ListIterator;
+
+import biz.c24.io.gettingstarted.customer.preon.Customer;
+import biz.c24.io.gettingstarted.customer.preon.CustomersFile;
+
+/**
+ * Maps a short string field of each Customer in a Preon CustomersFile to the Customer's ordinal.
+ *
+ * Keys of up to 16 ASCII characters (CustomerNumber, CustomerAcronym, SortCode all qualify) are packed
+ * into two longs and stored in an open-addressing table in a direct buffer, so the index adds almost
+ * nothing to the heap. A lookup packs the key, probes the table and returns the ordinal without
+ * creating any objects. The index also records where each Customer starts in the file's Preon data, so
+ * get() wraps just that Customer directly; CustomersFile.getCustomer(ordinal) would walk every Customer
+ * before it.
+ *
+ * Keys needn't be unique. lookup() returns the first ordinal with the key and next() walks the rest.
+ *
+ */
+public class PreonKeyIndex {
+
+    /**
+     * Extracts the key to index from each Customer
+     */
+    public interface KeyField {
+        String get(Customer customer);
+    }
+
+    public static final KeyField CUSTOMER_NUMBER = new KeyField() {
+
+        @Override
+        public String get(Customer customer) {
+            return customer.getCustomerNumber();
+        }
+    };
+
+    public static final KeyField CUSTOMER_ACRONYM = new KeyField() {
+
+        @Override
+        public String get(Customer customer) {
+            return customer.getCustomerAcronym();
+        }
+    };
+
+    public static final KeyField SORT_CODE = new KeyField() {
+
+        @Override
+        public String get(Customer customer) {
+            return customer.getSortCode();
+        }
+    };
+
+    public static final int NOT_FOUND = -1;
+
+    private static final int MAX_KEY_LENGTH = 16;
+
+    // Each slot holds the two packed key longs and the first ordinal + 1 (0 marks an empty slot)
+    private static final int SLOT_SIZE = 20;
+
+    private final byte[] data;
+    private final int dataOffset;
+    private final ByteBuffer table;
+    private final ByteBuffer chain;
+    private final ByteBuffer positions;
+    private final int mask;
+
+    private PreonKeyIndex(CustomersFile file, int customers) {
+        this.data = file.getPreonData();
+        this.dataOffset = file.getPreonDataOffset();
+        // A power of two at least twice the number of customers, so the table is never more than half full
+        long capacity = Long.highestOneBit(Math.max(2L, customers) * 2 - 1) * 2;
+        long tableSize = capacity * SLOT_SIZE;
+        // The next ordinal with the same key, and the Customer's offset in the Preon data, for each ordinal
+        long chainSize = Math.max(1L, customers) * 4;
+        if(tableSize > Integer.MAX_VALUE) {
+            // A direct buffer, and every position within it, is limited to an int
+            throw new IllegalArgumentException("Can't index " + customers + " customers: the table would need " + tableSize
+                + " bytes, more than the " + Integer.MAX_VALUE + " a buffer can hold");
+        }
+        mask = (int) capacity - 1;
+        table = ByteBuffer.allocateDirect((int) tableSize).order(ByteOrder.nativeOrder());
+        chain = ByteBuffer.allocateDirect((int) chainSize).order(ByteOrder.nativeOrder());
+        positions = ByteBuffer.allocateDirect((int) chainSize).order(ByteOrder.nativeOrder());
+    }
+
+    public static PreonKeyIndex build(CustomersFile file, KeyField field) {
+
+        List<Customer> customers = file.getCustomer();
+        PreonKeyIndex index = new PreonKeyIndex(file, customers.size());
+
+        // Insert in reverse so each chain comes out in document order. The List is a LinkedList, so it is
+        // walked with an iterator rather than by index.
+        ListIterator<Customer> reverse = customers.listIterator(customers.size());
+        for(int ordinal = customers.size() - 1; reverse.hasPrevious(); ordinal--) {
+            Customer customer = reverse.previous();
+            String key = field.get(customer);
+            if(!isPackable(key)) {
+                throw new IllegalArgumentException("Customer " + ordinal + " has a key which can't be indexed: " + key);
+            }
+            index.insert(pack(key, 0), pack(key, 8), ordinal);
+            index.positions.putInt(ordinal * 4, customer.getBufferOffset());
+        }
+        return index;
+    }
+
+    /**
+     * Returns the ordinal of the first Customer with the key, or NOT_FOUND
+     */
+    public int lookup(CharSequence key) {
+
+        if(!isPackable(key)) {
+            return NOT_FOUND;
+        }
+        long high = pack(key, 0);
+        long low = pack(key, 8);
+
+        for(int slot = hash(high, low) & mask; ; slot = (slot + 1) & mask) {
+            int position = slot * SLOT_SIZE;
+            int ordinal = table.getInt(position + 16) - 1;
+            if(ordinal == NOT_FOUND) {
+                return NOT_FOUND;
+            }
+            if(table.getLong(position) == high && table.getLong(position + 8) == low) {
+                return ordinal;
+            }
+        }
+    }
+
+    /**
+     * Returns the ordinal of the next Customer with the same key as ordinal, or NOT_FOUND
+     */
+    public int next(int ordinal) {
+        return chain.getInt(ordinal * 4) - 1;
+    }
+
+    /**
+     * Returns the first Customer with the key, or null
+     */
+    public Customer get(CharSequence key) {
+        int ordinal = lookup(key);
+        return ordinal == NOT_FOUND? null : getCustomer(ordinal);
+    }
+
+    /**
+     * Returns the Customer at ordinal, sharing the CustomersFile's Preon data
+     */
+    public Customer getCustomer(int ordinal) {
+        // As CustomersFile.getCustomer(ordinal) would, once it had found the Customer's offset
+        return Customer.allocate(data, dataOffset, positions.getInt(ordinal * 4));
+    }
+
+    private void insert(long high, long low, int ordinal) {
+
+        for(int slot = hash(high, low) & mask; ; slot = (slot + 1) & mask) {
+            int position = slot * SLOT_SIZE;
+            int head = table.getInt(position + 16);
+            if(head == 0 || (table.getLong(position) == high && table.getLong(position + 8) == low)) {
+                chain.putInt(ordinal * 4, head);
+                table.putLong(position, high);
+                table.putLong(position + 8, low);
+                table.putInt(position + 16, ordinal + 1);
+                return;
+            }
+        }
+    }
+
+    private static boolean isPackable(CharSequence key) {
+        if(key == null || key.length() > MAX_KEY_LENGTH) {
+            return false;
+        }
+        for(int i = 0; i < key.length(); i++) {
+            if(key.charAt(i) > 0x7f) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long pack(CharSequence key, int from) {
+        long packed = 0;
+        for(int i = from; i < from + 8; i++) {
+            packed = (packed << 8) | (i < key.length()? key.charAt(i) : 0);
+        }
+        return packed;
+    }
+
+    private static int hash(long high, long low) {
+        long h = high * 0x9E3779B97F4A7C15L ^ low;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+}
@@ -0,0 +1,369 @@
+package ingest;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import store.PreonStore;
+import biz.c24.io.api.C24;
+import biz.c24.io.api.C24.Format;
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.data.ValidationException;
+import biz.c24.io.api.presentation.MarshalListener;
+import biz.c24.io.api.presentation.StreamingSink;
+import biz.c24.io.gettingstarted.contact.ContactDetailsFile;
+import biz.c24.io.gettingstarted.contact.ContactDetailsFile.ContactDetails;
+import biz.c24.io.gettingstarted.contact.ContactDetailsFileDataType.ContactDetailsDataType;
+import biz.c24.io.gettingstarted.customer.Customer;
+import biz.c24.io.gettingstarted.customer.CustomersFile;
+import biz.c24.io.gettingstarted.transform.GenerateContactListTransform;
+
+/**
+ * Turns a directory of Customers files into a single ContactDetailsFile with one entry per customer number.
+ *
+ * The files are parsed, validated and transformed in parallel. Worker threads take the next file from a
+ * shared queue as soon as they finish the last, so a few large files don't leave the other threads idle.
+ * Invalid Customers are dropped, as in TransformPipeline.
+ *
+ * The resulting ContactDetails are spooled as Preons to a PreonStore in a work directory next to the output,
+ * in whatever order the files finish. Each time the store is synced, the name of every file spooled since is
+ * appended to a checkpoint along with the range of spool records holding its ContactDetails. A restarted run
+ * skips the checkpointed files. Once every file is done the spool is streamed into the output through a
+ * MarshalListener, file by file in name order, dropping repeated customer numbers: the ContactDetails from
+ * the first file by name wins, so the output is the same however the work was scheduled. Only the customer
+ * numbers are held in memory, never the ContactDetails themselves. The output is written alongside and
+ * renamed into place, then the work directory is removed. If any file couldn't be ingested, run() throws
+ * instead and leaves the work directory as it is, so the next run retries only the files which failed.
+ *
+ */
+public class DirectoryIngest {
+
+    private static final Logger LOG = Logger.getLogger(DirectoryIngest.class);
+
+    public static final FilenameFilter XML_FILES = new FilenameFilter() {
+
+        @Override
+        public boolean accept(File dir, String name) {
+            return name.endsWith(".xml");
+        }
+    };
+
+    private static final String CHECKPOINT = "checkpoint";
+    private static final String SPOOL = "contact-details";
+
+    private final int threads;
+    private final int checkpointEvery;
+
+    private volatile IngestProgress progress;
+
+    /**
+     * Reading the files is the bottleneck, so by default there are more threads than cores
+     */
+    public DirectoryIngest() {
+        this(Runtime.getRuntime().availableProcessors() * 2, 100);
+    }
+
+    /**
+     * @param checkpointEvery the number of files between checkpoints. Each one forces the spool to disk.
+     */
+    public DirectoryIngest(int threads, int checkpointEvery) {
+        this.threads = threads;
+        this.checkpointEvery = checkpointEvery;
+    }
+
+    /**
+     * Progress of the current or most recent run
+     */
+    public IngestProgress getProgress() {
+        return progress;
+    }
+
+    public void run(File directory, File output, Format format) throws IOException {
+        run(directory, XML_FILES, output, format);
+    }
+
+    public void run(File directory, FilenameFilter filter, File output, Format format) throws IOException {
+
+        File[] files = directory.listFiles(filter);
+        if(files == null) {
+            throw new IOException(directory + " is not a directory");
+        }
+        Arrays.sort(files);
+
+        File work = new File(output.getPath() + ".work");
+        work.mkdirs();
+        File checkpointFile = new File(work, CHECKPOINT);
+        Map<String, int[]> done = readCheckpoint(checkpointFile);
+
+        Queue<File> todo = new ConcurrentLinkedQueue<File>();
+        for(File file : files) {
+            if(!done.containsKey(file.getName())) {
+                todo.add(file);
+            }
+        }
+        progress = new IngestProgress(files.length, files.length - todo.size());
+
+        PreonStore<biz.c24.io.gettingstarted.contact.preon.ContactDetailsFile.ContactDetails> spool =
+            PreonStore.open(work, SPOOL, PreonStore.CONTACT_DETAILS);
+        try {
+            FileOutputStream checkpoint = new FileOutputStream(checkpointFile, true);
+            try {
+                spool(todo, spool, checkpoint);
+            } finally {
+                checkpoint.close();
+            }
+            if(progress.getFailed() > 0) {
+                // Keep the spool and checkpoint so the next run only redoes the files which failed, and
+                // don't put an output missing their customers in place of the last good one
+                throw new IOException(progress.getFailed() + " of " + files.length + " files couldn't be ingested and "
+                    + output + " hasn't been written; fix them and run again to retry just those files");
+            }
+            merge(spool, readCheckpoint(checkpointFile), output, format);
+        } finally {
+            spool.close();
+        }
+
+        for(File file : work.listFiles()) {
+            file.delete();
+        }
+        work.delete();
+    }
+
+    /**
+     * Transforms every file on the worker threads and appends the results to the spool on this one
+     */
+    private void spool(final Queue<File> todo, PreonStore<?> spool, FileOutputStream checkpoint) throws IOException {
+
+        final BlockingQueue<Spooled> results = new ArrayBlockingQueue<Spooled>(threads * 4);
+        final CountDownLatch running = new CountDownLatch(threads);
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        for(int i = 0; i < threads; i++) {
+            workers.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    // Transforms aren't shared between threads
+                    GenerateContactListTransform xform = new GenerateContactListTransform();
+                    try {
+                        for(File file = todo.poll(); file != null; file = todo.poll()) {
+                            Spooled result = transform(xform, file);
+                            if(result != null) {
+                                results.put(result);
+                            }
+                        }
+                    } catch(InterruptedException ex) {
+                        // The spooler has failed
+                    } finally {
+                        running.countDown();
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+
+        try {
+            List<String> unsynced = new ArrayList<String>();
+            while(running.getCount() > 0 || !results.isEmpty()) {
+                Spooled result = results.poll(100, TimeUnit.MILLISECONDS);
+                if(result == null) {
+                    continue;
+                }
+                int first = spool.size();
+                for(biz.c24.io.gettingstarted.contact.preon.ContactDetailsFile.ContactDetails contactDetails : result.contactDetails) {
+                    spool.append(contactDetails);
+                }
+                unsynced.add(result.name + '\t' + first + '\t' + result.contactDetails.length);
+                if(unsynced.size() >= checkpointEvery) {
+                    checkpoint(spool, checkpoint, unsynced);
+                }
+            }
+            checkpoint(spool, checkpoint, unsynced);
+        } catch(InterruptedException ex) {
+            throw new IOException("Interrupted", ex);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Parses, validates and transforms one file, returning null if it couldn't be processed
+     */
+    private Spooled transform(GenerateContactListTransform xform, File file) {
+        try {
+            CustomersFile customers = C24.parse(CustomersFile.class).from(file);
+            int total = customers.getCustomer().length;
+
+            List<Customer> valid = new ArrayList<Customer>();
+            for(Customer customer : customers.getCustomer()) {
+                try {
+                    C24.validate(customer);
+                    valid.add(customer);
+                } catch(ValidationException vEx) {
+                    // Counted below
+                }
+            }
+
+            ContactDetails[] contactDetails = new ContactDetails[0];
+            if(!valid.isEmpty()) {
+                customers.setCustomer(valid.toArray(new Customer[valid.size()]));
+                contactDetails = xform.transform(customers).getContactDetails();
+            }
+
+            // Converting here rather than in the spooler keeps the single-threaded part as small as possible
+            biz.c24.io.gettingstarted.contact.preon.ContactDetailsFile.ContactDetails[] preons =
+                new biz.c24.io.gettingstarted.contact.preon.ContactDetailsFile.ContactDetails[contactDetails.length];
+            for(int i = 0; i < contactDetails.length; i++) {
+                preons[i] = contactDetails[i].toPreon();
+            }
+
+            progress.fileDone(file.length(), total, total - valid.size());
+            return new Spooled(file.getName(), preons);
+
+        } catch(Exception ex) {
+            LOG.warn("Unable to ingest " + file + "; it will be retried on the next run", ex);
+            progress.fileFailed();
+            return null;
+        }
+    }
+
+    /**
+     * Forces the spool to disk and only then records the files whose ContactDetails it holds, as lines of
+     * [file name] [first record] [record count]
+     */
+    private static void checkpoint(PreonStore<?> spool, FileOutputStream checkpoint, List<String> files) throws IOException {
+        if(files.isEmpty()) {
+            return;
+        }
+        spool.sync();
+        StringBuilder lines = new StringBuilder();
+        for(String file : files) {
+            lines.append(file).append('\n');
+        }
+        checkpoint.write(lines.toString().getBytes("UTF-8"));
+        checkpoint.getFD().sync();
+        files.clear();
+    }
+
+    /**
+     * The checkpointed files, in name order, with the first spool record and number of records for each
+     */
+    private static SortedMap<String, int[]> readCheckpoint(File checkpoint) throws IOException {
+        SortedMap<String, int[]> done = new TreeMap<String, int[]>();
+        if(checkpoint.exists()) {
+            StringBuilder content = new StringBuilder();
+            Reader reader = new InputStreamReader(new FileInputStream(checkpoint), "UTF-8");
+            try {
+                char[] buffer = new char[8192];
+                for(int read = reader.read(buffer); read >= 0; read = reader.read(buffer)) {
+                    content.append(buffer, 0, read);
+                }
+            } finally {
+                reader.close();
+            }
+            // A crash while checkpointing can leave a partial last line, without its newline, which is ignored
+            int end = content.lastIndexOf("\n");
+            for(String line : content.substring(0, end + 1).split("\n")) {
+                String[] fields = line.split("\t");
+                if(fields.length == 3) {
+                    done.put(fields[0], new int[] {Integer.parseInt(fields[1]), Integer.parseInt(fields[2])});
+                }
+            }
+        }
+        return done;
+    }
+
+    /**
+     * Streams the spooled ContactDetails into one ContactDetailsFile, file by file in name order, skipping
+     * repeated customer numbers. Records outside the checkpointed ranges, left by a run which stopped before
+     * checkpointing them, are ignored; their files have since been spooled again.
+     */
+    private void merge(final PreonStore<biz.c24.io.gettingstarted.contact.preon.ContactDetailsFile.ContactDetails> spool,
+                       final SortedMap<String, int[]> files, File output, Format format) throws IOException {
+
+        // As in TransformPipeline, a single placeholder ContactDetails is replaced by the MarshalListener
+        // with every ContactDetails from the spool. The previous setting of the shared type is restored afterwards.
+        ContactDetailsDataType type = (ContactDetailsDataType) ContactDetailsDataType.getInstance();
+        boolean processAsBatch = type.isProcessAsBatch();
+        type.setProcessAsBatch(true);
+
+        ContactDetailsFile file = new ContactDetailsFile();
+        file.addContactDetails(new ContactDetails());
+
+        MarshalListener listener = new MarshalListener() {
+
+            @Override
+            public boolean marshal(ComplexDataObject value, StreamingSink sink) throws Exception {
+                if(value instanceof ContactDetails) {
+                    Set<String> seen = new HashSet<String>();
+                    for(int[] records : files.values()) {
+                        for(int i = records[0], end = records[0] + records[1]; i < end; i++) {
+                            biz.c24.io.gettingstarted.contact.preon.ContactDetailsFile.ContactDetails preon = spool.get(i);
+                            if(seen.add(preon.getCustomerNumber())) {
+                                sink.marshal(ContactDetails.toCdo(preon));
+                                progress.written();
+                            } else {
+                                progress.duplicate();
+                            }
+                        }
+                    }
+                    return true;
+                } else {
+                    return false;
+                }
+            }
+        };
+
+        File partial = new File(output.getPath() + ".partial");
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(partial), 64 * 1024);
+        try {
+            C24.write(file).as(format).with(listener).to(out);
+        } finally {
+            type.setProcessAsBatch(processAsBatch);
+            out.close();
+        }
+
+        output.delete();
+        if(!partial.renameTo(output)) {
+            throw new IOException("Unable to rename " + partial + " to " + output);
+        }
+    }
+
+    /**
+     * The ContactDetails produced from one input file
+     */
+    private static class Spooled {
+
+        final String name;
+        final biz.c24.io.gettingstarted.contact.preon.ContactDetailsFile.ContactDetails[] contactDetails;
+
+        Spooled(String name, biz.c24.io.gettingstarted.contact.preon.ContactDetailsFile.ContactDetails[] contactDetails) {
+            this.name = name;
+            this.contactDetails = contactDetails;
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+package ingest;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live counters for a DirectoryIngest, safe to read from any thread while it runs.
+ *
+ */
+public class IngestProgress {
+
+    private final long startNanos = System.nanoTime();
+    private final int files;
+    private final int skipped;
+
+    private final AtomicLong done = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong customers = new AtomicLong();
+    private final AtomicLong invalid = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+
+    IngestProgress(int files, int skipped) {
+        this.files = files;
+        this.skipped = skipped;
+    }
+
+    /**
+     * Input files found in the directory
+     */
+    public int getFiles() {
+        return files;
+    }
+
+    /**
+     * Files skipped because an earlier, interrupted run had already done them
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Files parsed and transformed by this run
+     */
+    public long getDone() {
+        return done.get();
+    }
+
+    /**
+     * Files which couldn't be parsed or transformed. They aren't checkpointed and the run fails without
+     * writing its output, keeping the checkpoint, so the next run retries only these.
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    public long getCustomers() {
+        return customers.get();
+    }
+
+    /**
+     * Customers dropped because they failed validation
+     */
+    public long getInvalid() {
+        return invalid.get();
+    }
+
+    /**
+     * ContactDetails written to the output so far
+     */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * ContactDetails dropped because one for the same customer number was already written
+     */
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+
+    void fileDone(long bytes, int customerCount, int invalidCount) {
+        bytesRead.addAndGet(bytes);
+        customers.addAndGet(customerCount);
+        invalid.addAndGet(invalidCount);
+        done.incrementAndGet();
+    }
+
+    void fileFailed() {
+        failed.incrementAndGet();
+    }
+
+    void written() {
+        written.incrementAndGet();
+    }
+
+    void duplicate() {
+        duplicates.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        long elapsed = Math.max(1, System.nanoTime() - startNanos);
+        long finished = skipped + done.get() + failed.get();
+        return "files " + finished + "/" + files + " (skipped=" + skipped + " failed=" + failed.get() + ")"
+            + " rate=" + done.get() * 1000000000L / elapsed + " files/s"
+            + " read=" + bytesRead.get() * 1000000000L / elapsed / 1024 + "KB/s"
+            + " customers=" + customers.get() + " invalid=" + invalid.get()
+            + " written=" + written.get() + " duplicates=" + duplicates.get();
+    }
+
+}
@@ -0,0 +1,91 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+/**
+ * The metrics for each C24 operation, registered as MBeans under c24.gettingstarted:type=C24Operation.
+ */
+public class C24Metrics {
+
+    private static final Logger LOG = Logger.getLogger(C24Metrics.class);
+
+    public static final OperationMetrics PARSE = new OperationMetrics("parse");
+    public static final OperationMetrics VALIDATE = new OperationMetrics("validate");
+    public static final OperationMetrics VALIDATE_FULLY = new OperationMetrics("validateFully");
+    public static final OperationMetrics TRANSFORM = new OperationMetrics("transform");
+    public static final OperationMetrics TO_PREON = new OperationMetrics("toPreon");
+    public static final OperationMetrics TO_CDO = new OperationMetrics("toCdo");
+    public static final OperationMetrics WRITE = new OperationMetrics("write");
+
+    private static final OperationMetrics[] ALL = {PARSE, VALIDATE, VALIDATE_FULLY, TRANSFORM, TO_PREON, TO_CDO, WRITE};
+
+    private static ScheduledExecutorService logger;
+
+    public static synchronized void registerMBeans() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for(OperationMetrics operation : ALL) {
+            ObjectName name = new ObjectName("c24.gettingstarted:type=C24Operation,name=" + operation.getName());
+            if(!server.isRegistered(name)) {
+                server.registerMBean(operation, name);
+            }
+        }
+    }
+
+    /**
+     * Logs a summary of every operation which has been called, at INFO on the metrics.C24Metrics logger
+     */
+    public static synchronized void startLogging(long period, TimeUnit unit) {
+        if(logger == null) {
+            logger = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "c24-metrics");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            logger.scheduleAtFixedRate(new Runnable() {
+
+                @Override
+                public void run() {
+                    log();
+                }
+            }, period, period, unit);
+        }
+    }
+
+    public static synchronized void stopLogging() {
+        if(logger != null) {
+            logger.shutdown();
+            logger = null;
+        }
+    }
+
+    public static void log() {
+        if(LOG.isInfoEnabled()) {
+            for(OperationMetrics operation : ALL) {
+                if(operation.getCalls() > 0) {
+                    LOG.info(operation);
+                }
+            }
+        }
+    }
+
+    public static void reset() {
+        for(OperationMetrics operation : ALL) {
+            operation.reset();
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+package metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import biz.c24.io.api.C24;
+import biz.c24.io.api.C24.Format;
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.data.ValidationEvent;
+import biz.c24.io.api.data.ValidationException;
+import biz.c24.io.api.data.preon.PreonDataObject;
+import biz.c24.io.gettingstarted.contact.ContactDetailsFile;
+import biz.c24.io.gettingstarted.customer.CustomersFile;
+import biz.c24.io.gettingstarted.transform.GenerateContactListTransform;
+
+/**
+ * Drop-in replacements for the C24 calls used in GettingStartedCDO and GettingStartedPreon which record
+ * each call in C24Metrics.
+ *
+ * For any other call, time it directly:
+ *
+ *     long start = C24Metrics.PARSE.start();
+ *     MyType obj = C24.parse(MyType.class).as(JSON).from(...);
+ *     C24Metrics.PARSE.stop(start, 1);
+ *
+ * Records are the Customers in a CustomersFile or the ContactDetails in a ContactDetailsFile, so e.g. the
+ * parse records are the Customers parsed; any other document counts as one record.
+ *
+ */
+public class InstrumentedC24 {
+
+    public static <T> T parse(Class<T> type, File file) throws IOException {
+        long start = C24Metrics.PARSE.start();
+        long records = 0;
+        try {
+            T parsed = C24.parse(type).from(file);
+            records = records(parsed);
+            return parsed;
+        } finally {
+            C24Metrics.PARSE.stop(start, records);
+        }
+    }
+
+    public static <T extends ComplexDataObject> T validate(T object) throws ValidationException {
+        long start = C24Metrics.VALIDATE.start();
+        long failures = 1;
+        try {
+            T valid = C24.validate(object);
+            failures = 0;
+            return valid;
+        } finally {
+            C24Metrics.VALIDATE.stop(start, records(object), failures);
+        }
+    }
+
+    public static ValidationEvent[] validateFully(ComplexDataObject object) {
+        long start = C24Metrics.VALIDATE_FULLY.start();
+        ValidationEvent[] failures = null;
+        try {
+            failures = C24.validateFully(object);
+            return failures;
+        } finally {
+            C24Metrics.VALIDATE_FULLY.stop(start, records(object), failures == null? 0 : failures.length);
+        }
+    }
+
+    public static ContactDetailsFile transform(GenerateContactListTransform xform, CustomersFile file) throws ValidationException {
+        long start = C24Metrics.TRANSFORM.start();
+        long records = 0;
+        try {
+            ContactDetailsFile contacts = xform.transform(file);
+            records = records(contacts);
+            return contacts;
+        } finally {
+            C24Metrics.TRANSFORM.stop(start, records);
+        }
+    }
+
+    public static biz.c24.io.gettingstarted.customer.preon.CustomersFile toPreon(CustomersFile file) throws IOException {
+        long start = C24Metrics.TO_PREON.start();
+        long records = 0;
+        try {
+            biz.c24.io.gettingstarted.customer.preon.CustomersFile preon = file.toPreon();
+            records = records(file);
+            return preon;
+        } finally {
+            C24Metrics.TO_PREON.stop(start, records);
+        }
+    }
+
+    public static <T extends ComplexDataObject> T toCdo(PreonDataObject preon) {
+        long start = C24Metrics.TO_CDO.start();
+        long records = 0;
+        try {
+            T cdo = C24.<T>toCdo(preon);
+            records = records(cdo);
+            return cdo;
+        } finally {
+            C24Metrics.TO_CDO.stop(start, records);
+        }
+    }
+
+    public static void write(Object object, Format format, OutputStream out) throws IOException {
+        long start = C24Metrics.WRITE.start();
+        long records = 0;
+        try {
+            C24.write(object).as(format).to(out);
+            records = records(object);
+        } finally {
+            C24Metrics.WRITE.stop(start, records);
+        }
+    }
+
+    /**
+     * The Customers or ContactDetails in a CDO file, or 1 for any other document. A Preon file counts as
+     * 1, as counting its records would mean walking all of them.
+     */
+    private static long records(Object document) {
+        if(document instanceof CustomersFile) {
+            return ((CustomersFile) document).getCustomer().length;
+        } else if(document instanceof ContactDetailsFile) {
+            return ((ContactDetailsFile) document).getContactDetails().length;
+        }
+        return document == null? 0 : 1;
+    }
+
+}
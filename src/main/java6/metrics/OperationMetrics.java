@@ -0,0 +1,170 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency, allocation, record and failure counts for one C24 operation.
+ *
+ * Allocation is read from the JVM's per-thread allocation counter, so it covers everything the calling
+ * thread allocated during the operation. It's only available on HotSpot-derived JVMs; elsewhere it
+ * reads as zero.
+ *
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong allocated = new AtomicLong();
+
+    // The calling thread's allocation counter at each start() it hasn't yet stopped, innermost last, so
+    // calls of the same operation can nest
+    private final ThreadLocal<StartStack> allocatedAtStart = new ThreadLocal<StartStack>() {
+
+        @Override
+        protected StartStack initialValue() {
+            return new StartStack();
+        }
+    };
+
+    private static final class StartStack {
+
+        long[] values = new long[4];
+        int depth;
+
+        void push(long value) {
+            if(depth == values.length) {
+                values = Arrays.copyOf(values, depth * 2);
+            }
+            values[depth++] = value;
+        }
+
+        long pop(long otherwise) {
+            // A stop() without a start() on this thread has nothing to measure against
+            return depth == 0? otherwise : values[--depth];
+        }
+    }
+
+    OperationMetrics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Begins timing a call. Pass the result to stop() on the same thread; calls may nest, but each must
+     * be stopped, e.g. in a finally block, before the call around it.
+     */
+    public long start() {
+        if(THREADS != null) {
+            allocatedAtStart.get().push(THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()));
+        }
+        return System.nanoTime();
+    }
+
+    public void stop(long start, long recordCount) {
+        latency.record(System.nanoTime() - start);
+        if(THREADS != null) {
+            // Only the completed call's own allocation is added, so the total never includes calls in flight
+            long now = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+            allocated.addAndGet(now - allocatedAtStart.get().pop(now));
+        }
+        records.addAndGet(recordCount);
+    }
+
+    /**
+     * Records a call which completed but found failureCount failures, e.g. validation events
+     */
+    public void stop(long start, long recordCount, long failureCount) {
+        stop(start, recordCount);
+        failures.addAndGet(failureCount);
+    }
+
+    @Override
+    public long getCalls() {
+        return latency.getCount();
+    }
+
+    @Override
+    public long getRecords() {
+        return records.get();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.get();
+    }
+
+    @Override
+    public long getMeanNanos() {
+        return latency.getMean();
+    }
+
+    @Override
+    public long getMedianNanos() {
+        return latency.getPercentile(50);
+    }
+
+    @Override
+    public long get99thPercentileNanos() {
+        return latency.getPercentile(99);
+    }
+
+    @Override
+    public long get999thPercentileNanos() {
+        return latency.getPercentile(99.9);
+    }
+
+    @Override
+    public long getMaxNanos() {
+        return latency.getMax();
+    }
+
+    @Override
+    public long getAllocatedBytesPerCall() {
+        long calls = latency.getCount();
+        return calls == 0? 0 : allocated.get() / calls;
+    }
+
+    @Override
+    public void reset() {
+        latency.reset();
+        records.set(0);
+        failures.set(0);
+        allocated.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return name + ": calls=" + getCalls() + " records=" + getRecords() + " failures=" + getFailures()
+             + " mean=" + getMeanNanos() / 1000 + "us p50=" + getMedianNanos() / 1000 + "us p99=" + get99thPercentileNanos() / 1000
+             + "us p99.9=" + get999thPercentileNanos() / 1000 + "us max=" + getMaxNanos() / 1000 + "us alloc/call=" + getAllocatedBytesPerCall() + "B";
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        try {
+            if(threads instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+                if(counter.isThreadAllocatedMemorySupported()) {
+                    counter.setThreadAllocatedMemoryEnabled(true);
+                    return counter;
+                }
+            }
+        } catch(LinkageError err) {
+            // Not a HotSpot-derived JVM
+        } catch(UnsupportedOperationException ex) {
+            // Allocation counting not supported
+        }
+        return null;
+    }
+
+}
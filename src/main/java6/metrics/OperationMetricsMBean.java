@@ -0,0 +1,28 @@
+package metrics;
+
+/**
+ * JMX view of the metrics for a single C24 operation
+ */
+public interface OperationMetricsMBean {
+
+    long getCalls();
+
+    long getRecords();
+
+    long getFailures();
+
+    long getMeanNanos();
+
+    long getMedianNanos();
+
+    long get99thPercentileNanos();
+
+    long get999thPercentileNanos();
+
+    long getMaxNanos();
+
+    long getAllocatedBytesPerCall();
+
+    void reset();
+
+}
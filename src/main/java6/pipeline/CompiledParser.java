@@ -0,0 +1,132 @@
+package pipeline;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import biz.c24.io.api.C24.Format;
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.data.Element;
+import biz.c24.io.api.presentation.JsonSource;
+import biz.c24.io.api.presentation.Source;
+import biz.c24.io.api.presentation.XMLSource;
+
+/**
+ * A parser configured once and then shared by any number of threads, the Java equivalent of the Scala
+ * <code>C24.parse(classOf[CustomersFile]) as C24.Format.XML</code>.
+ *
+ * C24.parse() creates a new builder and Source for every document, which is insignificant for large files
+ * but dominates the garbage when parsing millions of small messages. A CompiledParser instead keeps one
+ * Source per thread and reuses it, along with the stream it reads byte arrays through, so parsing a
+ * message allocates little beyond the CDO itself.
+ *
+ * Definitions are immutable; as() returns a new one.
+ *
+ */
+public final class CompiledParser<T extends ComplexDataObject> {
+
+    private final Class<T> type;
+    private final Element element;
+    private final Format format;
+
+    private final ThreadLocal<State> state = new ThreadLocal<State>() {
+
+        @Override
+        protected State initialValue() {
+            return new State(newSource(format));
+        }
+    };
+
+    /**
+     * @param element the root element of the documents, e.g. CustomersFileElement.getInstance()
+     */
+    public static <T extends ComplexDataObject> CompiledParser<T> parse(Class<T> type, Element element) {
+        return new CompiledParser<T>(type, element, Format.XML);
+    }
+
+    private CompiledParser(Class<T> type, Element element, Format format) {
+        this.type = type;
+        this.element = element;
+        this.format = format;
+        // Fail now rather than on the first parse
+        newSource(format);
+    }
+
+    /**
+     * A parser for the same type which reads the given format
+     */
+    public CompiledParser<T> as(Format format) {
+        return new CompiledParser<T>(type, element, format);
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public T from(byte[] message) throws IOException {
+        return from(message, 0, message.length);
+    }
+
+    public T from(byte[] message, int offset, int length) throws IOException {
+        State current = state.get();
+        current.input.reset(message, offset, length);
+        try {
+            return from(current.source, current.input);
+        } finally {
+            // Don't hold on to the caller's message
+            current.input.reset(null, 0, 0);
+        }
+    }
+
+    public T from(InputStream in) throws IOException {
+        return from(state.get().source, in);
+    }
+
+    private T from(Source source, InputStream in) throws IOException {
+        source.setInputStream(in);
+        return type.cast(source.readObject(element));
+    }
+
+    static Source newSource(Format format) {
+        if(format == Format.XML) {
+            return new XMLSource();
+        } else if(format == Format.JSON) {
+            return new JsonSource();
+        }
+        throw new IllegalArgumentException("Only XML and JSON can be compiled, not " + format);
+    }
+
+    private static class State {
+
+        final Source source;
+        final MessageInputStream input = new MessageInputStream();
+
+        State(Source source) {
+            this.source = source;
+        }
+    }
+
+    /**
+     * A ByteArrayInputStream which can be pointed at a new message
+     */
+    private static class MessageInputStream extends ByteArrayInputStream {
+
+        private static final byte[] EMPTY = new byte[0];
+
+        MessageInputStream() {
+            super(EMPTY);
+        }
+
+        void reset(byte[] message, int offset, int length) {
+            buf = message == null? EMPTY : message;
+            pos = offset;
+            count = offset + length;
+            mark = offset;
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+package pipeline;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.data.ValidationException;
+import biz.c24.io.api.data.ValidationManager;
+import biz.c24.io.api.transform.Transform;
+
+/**
+ * A parse, validate, transform and write sequence configured once and then shared by any number of
+ * threads. It's the Java equivalent of the Scala
+ * <code>input -> parser -> validate -> transform -> writer -> output</code> chain, built up the same
+ * way as the fluent API:
+ *
+ * <pre>
+ * CompiledPipeline&lt;CustomersFile, ContactDetailsFile&gt; pipeline =
+ *     CompiledPipeline.from(CompiledParser.parse(CustomersFile.class, CustomersFileElement.getInstance()).as(XML))
+ *                     .validate()
+ *                     .transform(GenerateContactListTransform.class, ContactDetailsFile.class)
+ *                     .write(CompiledWriter.write().as(JSON));
+ * </pre>
+ *
+ * Transforms and ValidationManagers can't be shared between threads, so each thread gets its own, along
+ * with the parser's Source and the writer's Sink and buffer. Once a thread has processed its first message
+ * the only garbage per message is the CDOs themselves.
+ *
+ * Definitions are immutable; each step returns a new one.
+ *
+ */
+public final class CompiledPipeline<I extends ComplexDataObject, O extends ComplexDataObject> {
+
+    private final CompiledParser<I> parser;
+    private final boolean validate;
+    private final Class<? extends Transform> transform;
+    private final Class<O> output;
+    private final CompiledWriter writer;
+
+    private final ThreadLocal<State> state = new ThreadLocal<State>() {
+
+        @Override
+        protected State initialValue() {
+            return new State(validate? new ValidationManager() : null, transform == null? null : newTransform(transform));
+        }
+    };
+
+    public static <T extends ComplexDataObject> CompiledPipeline<T, T> from(CompiledParser<T> parser) {
+        return new CompiledPipeline<T, T>(parser, false, null, parser.getType(), null);
+    }
+
+    private CompiledPipeline(CompiledParser<I> parser, boolean validate, Class<? extends Transform> transform, Class<O> output, CompiledWriter writer) {
+        this.parser = parser;
+        this.validate = validate;
+        this.transform = transform;
+        this.output = output;
+        this.writer = writer;
+    }
+
+    /**
+     * Fail-fast validation of each parsed message
+     */
+    public CompiledPipeline<I, O> validate() {
+        return new CompiledPipeline<I, O>(parser, true, transform, output, writer);
+    }
+
+    /**
+     * Transforms each validated message with a 1:1 Transform, a new instance of which is created for each thread
+     */
+    public <R extends ComplexDataObject> CompiledPipeline<I, R> transform(Class<? extends Transform> transform, Class<R> output) {
+        // Fail now rather than on the first message
+        newTransform(transform);
+        return new CompiledPipeline<I, R>(parser, validate, transform, output, writer);
+    }
+
+    public CompiledPipeline<I, O> write(CompiledWriter writer) {
+        return new CompiledPipeline<I, O>(parser, validate, transform, output, writer);
+    }
+
+    /**
+     * Parses, validates and transforms a message
+     */
+    public O apply(byte[] message, int offset, int length) throws IOException, ValidationException {
+        State current = state.get();
+
+        I input = parser.from(message, offset, length);
+        if(current.validator != null) {
+            current.validator.validateByException(input);
+        }
+        if(current.transform == null) {
+            return output.cast(input);
+        }
+
+        current.input[0][0] = input;
+        try {
+            return output.cast(current.transform.transform(current.input)[0][0]);
+        } finally {
+            current.input[0][0] = null;
+        }
+    }
+
+    /**
+     * Processes a message and writes the result to out
+     */
+    public void process(byte[] message, int offset, int length, OutputStream out) throws IOException, ValidationException {
+        writer().to(apply(message, offset, length), out);
+    }
+
+    /**
+     * Processes a message and returns the result marshaled into this thread's buffer, which remains valid
+     * until the thread next uses this pipeline's writer
+     */
+    public OutputBuffer process(byte[] message, int offset, int length) throws IOException, ValidationException {
+        return writer().toBuffer(apply(message, offset, length));
+    }
+
+    private CompiledWriter writer() {
+        if(writer == null) {
+            throw new IllegalStateException("No writer has been configured for this pipeline");
+        }
+        return writer;
+    }
+
+    private static Transform newTransform(Class<? extends Transform> transform) {
+        try {
+            return transform.newInstance();
+        } catch(InstantiationException ex) {
+            throw new IllegalArgumentException("Unable to create " + transform.getName(), ex);
+        } catch(IllegalAccessException ex) {
+            throw new IllegalArgumentException("Unable to create " + transform.getName(), ex);
+        }
+    }
+
+    private static class State {
+
+        final ValidationManager validator;
+        final Transform transform;
+        final Object[][] input = new Object[1][1];
+
+        State(ValidationManager validator, Transform transform) {
+            this.validator = validator;
+            this.transform = transform;
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+package pipeline;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import biz.c24.io.api.C24.Format;
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.presentation.JsonSink;
+import biz.c24.io.api.presentation.Sink;
+import biz.c24.io.api.presentation.XMLSink;
+
+/**
+ * A writer configured once and then shared by any number of threads, the Java equivalent of the Scala
+ * <code>C24.write() as C24.Format.JSON</code>.
+ *
+ * Each thread has its own Sink, permanently attached to its own OutputBuffer. Marshaling a message
+ * therefore creates no builder, Sink or stream; it fills the thread's buffer, which is then either copied
+ * to the caller's stream or handed back directly.
+ *
+ * Definitions are immutable; as() returns a new one.
+ *
+ */
+public final class CompiledWriter {
+
+    private final Format format;
+
+    private final ThreadLocal<State> state = new ThreadLocal<State>() {
+
+        @Override
+        protected State initialValue() {
+            return new State(newSink(format));
+        }
+    };
+
+    public static CompiledWriter write() {
+        return new CompiledWriter(Format.XML);
+    }
+
+    private CompiledWriter(Format format) {
+        this.format = format;
+        newSink(format);
+    }
+
+    /**
+     * A writer which produces the given format
+     */
+    public CompiledWriter as(Format format) {
+        return new CompiledWriter(format);
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public void to(ComplexDataObject object, OutputStream out) throws IOException {
+        toBuffer(object).writeTo(out);
+    }
+
+    /**
+     * Marshals the object into this thread's buffer, which remains valid until the thread next uses this writer
+     */
+    public OutputBuffer toBuffer(ComplexDataObject object) throws IOException {
+        State current = state.get();
+        current.buffer.reset();
+        current.sink.writeObject(object);
+        return current.buffer;
+    }
+
+    static Sink newSink(Format format) {
+        if(format == Format.XML) {
+            return new XMLSink();
+        } else if(format == Format.JSON) {
+            return new JsonSink();
+        }
+        throw new IllegalArgumentException("Only XML and JSON can be compiled, not " + format);
+    }
+
+    private static class State {
+
+        final Sink sink;
+        final OutputBuffer buffer = new OutputBuffer();
+
+        State(Sink sink) {
+            this.sink = sink;
+            sink.setOutputStream(buffer);
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+package pipeline;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+
+/**
+ * A growable byte buffer which is reused for every message marshaled on a thread.
+ *
+ * Unlike ByteArrayOutputStream it's unsynchronized and exposes its array, so the marshaled bytes can be
+ * handed on without being copied. A buffer which grew for an unusually large message is shrunk again on
+ * the next reset so that each thread's footprint stays small.
+ *
+ */
+public final class OutputBuffer extends OutputStream {
+
+    private static final int INITIAL_SIZE = 4 * 1024;
+    private static final int MAX_RETAINED_SIZE = 1024 * 1024;
+
+    private byte[] bytes = new byte[INITIAL_SIZE];
+    private int size;
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(size + 1);
+        bytes[size++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(size + len);
+        System.arraycopy(b, off, bytes, size, len);
+        size += len;
+    }
+
+    /**
+     * The buffer's array, of which the first size() bytes are valid. It's only valid until the buffer is next used.
+     */
+    public byte[] array() {
+        return bytes;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, 0, size);
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    public String toString(String charsetName) throws UnsupportedEncodingException {
+        return new String(bytes, 0, size, charsetName);
+    }
+
+    void reset() {
+        if(bytes.length > MAX_RETAINED_SIZE) {
+            bytes = new byte[INITIAL_SIZE];
+        }
+        size = 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if(capacity > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+        }
+    }
+
+}
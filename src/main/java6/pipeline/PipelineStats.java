@@ -0,0 +1,99 @@
+package pipeline;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live counters for each stage of a TransformPipeline.
+ *
+ * Records are counted as they leave a stage and busy time covers only the work done on them, not time
+ * spent waiting on the queues either side, so a stage with high utilisation and a full input queue is
+ * the bottleneck.
+ *
+ */
+public class PipelineStats {
+
+    public static class Stage {
+
+        private final String name;
+        private final int threads;
+        private final Collection<?> input;
+        private final AtomicLong records = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+
+        Stage(String name, int threads, Collection<?> input) {
+            this.name = name;
+            this.threads = threads;
+            this.input = input;
+        }
+
+        void record(long count, long startNanos) {
+            records.addAndGet(count);
+            busyNanos.addAndGet(System.nanoTime() - startNanos);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getRecords() {
+            return records.get();
+        }
+
+        /**
+         * Number of batches waiting to be picked up by this stage
+         */
+        public int getQueueDepth() {
+            return input == null? 0 : input.size();
+        }
+
+        /**
+         * Fraction of the elapsed time this stage's threads spent working
+         */
+        public double getUtilisation(long elapsedNanos) {
+            return elapsedNanos == 0? 0 : (double) busyNanos.get() / (elapsedNanos * (double) threads);
+        }
+    }
+
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong invalid = new AtomicLong();
+    private final Stage[] stages;
+
+    PipelineStats(Stage... stages) {
+        this.stages = stages;
+    }
+
+    public Stage[] getStages() {
+        return stages.clone();
+    }
+
+    /**
+     * Customers dropped by the validate stage
+     */
+    public long getInvalid() {
+        return invalid.get();
+    }
+
+    void invalid() {
+        invalid.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        long elapsed = System.nanoTime() - startNanos;
+        StringBuilder sb = new StringBuilder();
+        for(Stage stage : stages) {
+            if(sb.length() > 0) {
+                sb.append(" | ");
+            }
+            sb.append(stage.name)
+              .append(" queue=").append(stage.getQueueDepth())
+              .append(" records=").append(stage.getRecords())
+              .append(" rate=").append(stage.getRecords() * 1000000000L / Math.max(1, elapsed)).append("/s")
+              .append(" busy=").append(Math.round(stage.getUtilisation(elapsed) * 100)).append('%');
+        }
+        sb.append(" | invalid=").append(getInvalid());
+        return sb.toString();
+    }
+
+}
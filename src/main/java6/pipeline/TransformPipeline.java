@@ -0,0 +1,370 @@
+package pipeline;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import streaming.CustomerStreamer;
+import streaming.RecordHandler;
+import streaming.RecordSource;
+import biz.c24.io.api.C24;
+import biz.c24.io.api.C24.Format;
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.data.ValidationException;
+import biz.c24.io.api.presentation.MarshalListener;
+import biz.c24.io.api.presentation.StreamingSink;
+import biz.c24.io.gettingstarted.contact.ContactDetailsFile;
+import biz.c24.io.gettingstarted.contact.ContactDetailsFile.ContactDetails;
+import biz.c24.io.gettingstarted.contact.ContactDetailsFileDataType.ContactDetailsDataType;
+import biz.c24.io.gettingstarted.customer.Customer;
+import biz.c24.io.gettingstarted.customer.CustomersFile;
+import biz.c24.io.gettingstarted.transform.GenerateContactListTransform;
+
+/**
+ * Turns a Customers file into a ContactDetails file using a separate stage for each of
+ * parse, validate, GenerateContactListTransform and write.
+ *
+ * Customers are streamed from the input in batches. Validation and transformation each run on their own
+ * pool of threads, linked by bounded queues, and the writer puts batches back into input order before
+ * streaming them out. The number of batches between the parser and the writer is capped, so a slow
+ * stage holds back the parser rather than letting memory grow.
+ *
+ * Customers which fail validation are dropped and counted in the PipelineStats.
+ *
+ */
+public class TransformPipeline {
+
+    private static final Batch END = new Batch(-1, null);
+
+    private final int validateThreads;
+    private final int transformThreads;
+    private final int batchSize;
+    private final int maxBatchesInFlight;
+
+    private volatile PipelineStats stats;
+
+    public TransformPipeline() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+             Math.max(1, Runtime.getRuntime().availableProcessors() / 2), 1000, Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    public TransformPipeline(int validateThreads, int transformThreads, int batchSize, int maxBatchesInFlight) {
+        this.validateThreads = validateThreads;
+        this.transformThreads = transformThreads;
+        this.batchSize = batchSize;
+        this.maxBatchesInFlight = maxBatchesInFlight;
+    }
+
+    /**
+     * Statistics for the current or most recent run
+     */
+    public PipelineStats getStats() {
+        return stats;
+    }
+
+    public void run(final File input, OutputStream output, Format format) throws IOException {
+        run(new RecordSource<Customer>() {
+
+            @Override
+            public void produce(RecordHandler<Customer> handler) throws IOException {
+                CustomerStreamer.stream(input, handler);
+            }
+        }, output, format);
+    }
+
+    /**
+     * Runs the Customers from any source through the pipeline, e.g. only those which have changed since
+     * the last snapshot
+     */
+    public void run(RecordSource<Customer> input, OutputStream output, Format format) throws IOException {
+        new Run(input).writeTo(output, format);
+    }
+
+    private static class Batch {
+
+        final long sequence;
+        List<Customer> customers;
+        ContactDetails[] contactDetails;
+
+        Batch(long sequence, List<Customer> customers) {
+            this.sequence = sequence;
+            this.customers = customers;
+        }
+    }
+
+    /**
+     * The state of one pass through the pipeline
+     */
+    private class Run {
+
+        private final Semaphore inFlight = new Semaphore(maxBatchesInFlight);
+        private final BlockingQueue<Batch> parsed = new ArrayBlockingQueue<Batch>(maxBatchesInFlight);
+        private final BlockingQueue<Batch> validated = new ArrayBlockingQueue<Batch>(maxBatchesInFlight);
+        private final Map<Long, Batch> transformed = new ConcurrentHashMap<Long, Batch>();
+        private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        private final List<Thread> threads = new CopyOnWriteArrayList<Thread>();
+
+        private final PipelineStats runStats;
+        private final PipelineStats.Stage parseStage;
+        private final PipelineStats.Stage validateStage;
+        private final PipelineStats.Stage transformStage;
+        private final PipelineStats.Stage writeStage;
+
+        // Set by the parser once it knows how many batches there are
+        private volatile long batches = -1;
+
+        Run(final RecordSource<Customer> input) {
+
+            parseStage = new PipelineStats.Stage("parse", 1, null);
+            validateStage = new PipelineStats.Stage("validate", validateThreads, parsed);
+            transformStage = new PipelineStats.Stage("transform", transformThreads, validated);
+            writeStage = new PipelineStats.Stage("write", 1, transformed.values());
+            runStats = new PipelineStats(parseStage, validateStage, transformStage, writeStage);
+            stats = runStats;
+
+            start("parse", new Task() {
+
+                @Override
+                public void run() throws Exception {
+                    parse(input);
+                }
+            });
+
+            final AtomicInteger validators = new AtomicInteger(validateThreads);
+            for(int i = 0; i < validateThreads; i++) {
+                start("validate-" + i, new Task() {
+
+                    @Override
+                    public void run() throws Exception {
+                        validate();
+                        if(validators.decrementAndGet() == 0) {
+                            for(int j = 0; j < transformThreads; j++) {
+                                validated.put(END);
+                            }
+                        }
+                    }
+                });
+            }
+
+            for(int i = 0; i < transformThreads; i++) {
+                start("transform-" + i, new Task() {
+
+                    @Override
+                    public void run() throws Exception {
+                        transform();
+                    }
+                });
+            }
+        }
+
+        private void parse(RecordSource<Customer> input) throws Exception {
+
+            Batcher batcher = new Batcher();
+            input.produce(batcher);
+            batcher.flush();
+
+            batches = batcher.sequence;
+            for(int i = 0; i < validateThreads; i++) {
+                parsed.put(END);
+            }
+            signalWriter();
+        }
+
+        private void validate() throws InterruptedException {
+
+            for(Batch batch = parsed.take(); batch != END; batch = parsed.take()) {
+                long start = System.nanoTime();
+                List<Customer> valid = new ArrayList<Customer>(batch.customers.size());
+                for(Customer customer : batch.customers) {
+                    try {
+                        C24.validate(customer);
+                        valid.add(customer);
+                    } catch(ValidationException vEx) {
+                        runStats.invalid();
+                    }
+                }
+                batch.customers = valid;
+                validateStage.record(valid.size(), start);
+                validated.put(batch);
+            }
+        }
+
+        private void transform() throws Exception {
+
+            // Transforms aren't shared between threads
+            GenerateContactListTransform xform = new GenerateContactListTransform();
+
+            for(Batch batch = validated.take(); batch != END; batch = validated.take()) {
+                long start = System.nanoTime();
+                if(batch.customers.isEmpty()) {
+                    batch.contactDetails = new ContactDetails[0];
+                } else {
+                    CustomersFile file = new CustomersFile();
+                    file.setCustomer(batch.customers.toArray(new Customer[batch.customers.size()]));
+                    batch.contactDetails = xform.transform(file).getContactDetails();
+                }
+                batch.customers = null;
+                transformStage.record(batch.contactDetails.length, start);
+
+                synchronized(transformed) {
+                    transformed.put(batch.sequence, batch);
+                    transformed.notifyAll();
+                }
+            }
+        }
+
+        void writeTo(OutputStream output, Format format) throws IOException {
+
+            // We write a ContactDetailsFile holding a single placeholder ContactDetails. With 'Process As Batch'
+            // set the Sink hands the placeholder to our MarshalListener, which writes every transformed
+            // ContactDetails in its place, in order, as each batch becomes available. The type is a shared
+            // singleton, so the previous setting is restored once the file is written.
+            ContactDetailsDataType type = (ContactDetailsDataType) ContactDetailsDataType.getInstance();
+            boolean processAsBatch = type.isProcessAsBatch();
+            type.setProcessAsBatch(true);
+
+            ContactDetailsFile file = new ContactDetailsFile();
+            file.addContactDetails(new ContactDetails());
+
+            MarshalListener listener = new MarshalListener() {
+
+                @Override
+                public boolean marshal(ComplexDataObject value, StreamingSink sink) throws Exception {
+                    if(value instanceof ContactDetails) {
+                        for(long sequence = 0; ; sequence++) {
+                            Batch batch = awaitBatch(sequence);
+                            if(batch == null) {
+                                return true;
+                            }
+                            long start = System.nanoTime();
+                            for(ContactDetails contactDetails : batch.contactDetails) {
+                                sink.marshal(contactDetails);
+                            }
+                            writeStage.record(batch.contactDetails.length, start);
+                            inFlight.release();
+                        }
+                    } else {
+                        return false;
+                    }
+                }
+            };
+
+            try {
+                C24.write(file).as(format).with(listener).to(output);
+            } catch(RuntimeException ex) {
+                fail(ex);
+            } catch(IOException ex) {
+                fail(ex);
+            } finally {
+                type.setProcessAsBatch(processAsBatch);
+                for(Thread thread : threads) {
+                    thread.interrupt();
+                }
+            }
+
+            Throwable cause = failure.get();
+            if(cause != null) {
+                throw cause instanceof IOException? (IOException) cause : new IOException(cause);
+            }
+        }
+
+        /**
+         * Waits for the batch with the given sequence number, returning null once all batches are written
+         */
+        private Batch awaitBatch(long sequence) throws InterruptedException, IOException {
+            synchronized(transformed) {
+                while(true) {
+                    if(failure.get() != null) {
+                        throw new IOException("Pipeline failed", failure.get());
+                    }
+                    Batch batch = transformed.remove(sequence);
+                    if(batch != null) {
+                        return batch;
+                    }
+                    if(batches >= 0 && sequence >= batches) {
+                        return null;
+                    }
+                    transformed.wait();
+                }
+            }
+        }
+
+        private void signalWriter() {
+            synchronized(transformed) {
+                transformed.notifyAll();
+            }
+        }
+
+        private void fail(Throwable t) {
+            if(failure.compareAndSet(null, t)) {
+                for(Thread thread : threads) {
+                    thread.interrupt();
+                }
+                signalWriter();
+            }
+        }
+
+        private void start(String name, final Task task) {
+            Thread thread = new Thread("pipeline-" + name) {
+
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } catch(InterruptedException ex) {
+                        // Another stage has failed or the run is over
+                    } catch(Throwable t) {
+                        fail(t);
+                    }
+                }
+            };
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+
+        /**
+         * Groups streamed Customers into batches and hands them to the validate stage
+         */
+        private class Batcher implements RecordHandler<Customer> {
+
+            private List<Customer> customers = new ArrayList<Customer>(batchSize);
+            private long sequence;
+            private long start = System.nanoTime();
+
+            @Override
+            public void handle(Customer customer) throws InterruptedException {
+                customers.add(customer);
+                if(customers.size() == batchSize) {
+                    flush();
+                }
+            }
+
+            void flush() throws InterruptedException {
+                if(!customers.isEmpty()) {
+                    parseStage.record(customers.size(), start);
+                    // Blocks while too many batches are between here and the writer
+                    inFlight.acquire();
+                    parsed.put(new Batch(sequence++, customers));
+                    customers = new ArrayList<Customer>(batchSize);
+                    start = System.nanoTime();
+                }
+            }
+        }
+    }
+
+    private interface Task {
+        void run() throws Exception;
+    }
+
+}
@@ -0,0 +1,656 @@
+package prescreen;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import biz.c24.io.api.C24.Format;
+
+/**
+ * Screens the Customers in a raw XML or JSON Customers file against the field constraints from the data
+ * model, before anything is parsed.
+ *
+ * The input is read once. Customers which pass are copied byte for byte to the accepted output, along
+ * with everything around them, so it can be parsed exactly as the original would have been. Customers
+ * which fail are dropped, or written to a quarantine document of the same shape.
+ *
+ * Only Customers which C24.validate would certainly reject are screened out, so validating the accepted
+ * output gives the same verdict for every Customer as validating the original. Missing elements and any
+ * rules other than StartsWithCapitalLetter are left to C24.validate.
+ *
+ */
+public class CustomerPreScreen {
+
+    public static final String MODEL = "src/main/C24/Customers.dod";
+
+    private static final byte[] CUSTOMER = {'C', 'u', 's', 't', 'o', 'm', 'e', 'r'};
+
+    private final FieldConstraint[] constraints;
+
+    public CustomerPreScreen() throws IOException {
+        this(FieldConstraint.fromModel(new File(MODEL)));
+    }
+
+    public CustomerPreScreen(List<FieldConstraint> constraints) {
+        this.constraints = constraints.toArray(new FieldConstraint[constraints.size()]);
+    }
+
+    public static class Counts {
+
+        private long accepted;
+        private long rejected;
+        private final Map<String, Long> rejectedByField = new TreeMap<String, Long>();
+
+        void reject(FieldConstraint constraint) {
+            rejected++;
+            Long count = rejectedByField.get(constraint.getField());
+            rejectedByField.put(constraint.getField(), count == null? 1 : count + 1);
+        }
+
+        public long getAccepted() {
+            return accepted;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        /**
+         * Rejections by the first field found to fail in each Customer
+         */
+        public Map<String, Long> getRejectedByField() {
+            return rejectedByField;
+        }
+
+        @Override
+        public String toString() {
+            return "accepted=" + accepted + " rejected=" + rejected + " " + rejectedByField;
+        }
+    }
+
+    /**
+     * @param quarantine receives a Customers file of the rejected Customers, or null to drop them
+     */
+    public Counts screen(InputStream in, Format format, OutputStream accepted, OutputStream quarantine) throws IOException {
+        Counts counts = new Counts();
+        if(format == Format.JSON) {
+            new JsonScreen(in, accepted, quarantine, counts).run();
+        } else if(format == Format.XML) {
+            new XmlScreen(in, accepted, quarantine, counts).run();
+        } else {
+            throw new IllegalArgumentException("Only XML and JSON can be pre-screened");
+        }
+        return counts;
+    }
+
+    /**
+     * Screens in on a background thread, returning the accepted Customers as a stream which can be handed
+     * straight to the parser, e.g. CustomerStreamer.stream(preScreen.screened(in, XML, null), XML, handler).
+     * A failure while screening is rethrown from the returned stream.
+     */
+    public InputStream screened(final InputStream in, final Format format, final OutputStream quarantine) throws IOException {
+
+        final PipedInputStream accepted = new PipedInputStream(64 * 1024);
+        final PipedOutputStream out = new PipedOutputStream(accepted);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        Thread screen = new Thread("pre-screen") {
+
+            @Override
+            public void run() {
+                try {
+                    screen(in, format, out, quarantine);
+                } catch(Throwable t) {
+                    failure.set(t);
+                } finally {
+                    try {
+                        out.close();
+                    } catch(IOException ex) {
+                        // The reader has gone away
+                    }
+                }
+            }
+        };
+        screen.setDaemon(true);
+        screen.start();
+
+        return new FilterInputStream(accepted) {
+
+            @Override
+            public int read() throws IOException {
+                return checked(super.read());
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return checked(super.read(b, off, len));
+            }
+
+            private int checked(int result) throws IOException {
+                if(result < 0 && failure.get() != null) {
+                    throw new IOException("Pre-screen failed", failure.get());
+                }
+                return result;
+            }
+        };
+    }
+
+    private FieldConstraint constraintFor(byte[] bytes, int from, int to) {
+        for(FieldConstraint constraint : constraints) {
+            if(constraint.isNamed(bytes, from, to)) {
+                return constraint;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A growable byte array
+     */
+    private static class Bytes {
+
+        byte[] data = new byte[4096];
+        int length;
+
+        void add(int b) {
+            if(length == data.length) {
+                data = Arrays.copyOf(data, length * 2);
+            }
+            data[length++] = (byte) b;
+        }
+
+        void add(Bytes other) {
+            if(length + other.length > data.length) {
+                data = Arrays.copyOf(data, Math.max(length + other.length, length * 2));
+            }
+            System.arraycopy(other.data, 0, data, length, other.length);
+            length += other.length;
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            out.write(data, 0, length);
+        }
+
+        Bytes copy() {
+            Bytes copy = new Bytes();
+            copy.add(this);
+            return copy;
+        }
+    }
+
+    /**
+     * The parts common to both formats: buffered input, the gap between records and the two outputs
+     */
+    private abstract class Screen {
+
+        private final InputStream in;
+        private final byte[] buffer = new byte[64 * 1024];
+        private int position;
+        private int limit;
+
+        final OutputStream accepted;
+        final OutputStream quarantine;
+        final Counts counts;
+
+        // Everything since the end of the last record, and everything before the first
+        final Bytes gap = new Bytes();
+        Bytes prologue;
+        boolean quarantined;
+
+        final Bytes record = new Bytes();
+
+        Screen(InputStream in, OutputStream accepted, OutputStream quarantine, Counts counts) {
+            this.in = in;
+            this.accepted = accepted;
+            this.quarantine = quarantine;
+            this.counts = counts;
+        }
+
+        abstract void run() throws IOException;
+
+        int read() throws IOException {
+            if(position == limit) {
+                limit = in.read(buffer);
+                position = 0;
+                if(limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        /**
+         * Steps back over the byte just read
+         */
+        void unread() {
+            position--;
+        }
+
+        int readRequired() throws IOException {
+            int c = read();
+            if(c < 0) {
+                throw new IOException("Unexpected end of input");
+            }
+            return c;
+        }
+
+        /**
+         * Routes the record just read to the appropriate output
+         */
+        void finishRecord(FieldConstraint failed) throws IOException {
+            if(failed == null) {
+                counts.accepted++;
+                writeRecord(accepted, counts.accepted == 1);
+            } else {
+                counts.reject(failed);
+                if(quarantine != null) {
+                    if(!quarantined) {
+                        prologue.writeTo(quarantine);
+                        quarantined = true;
+                    }
+                    writeRecord(quarantine, counts.rejected == 1);
+                }
+            }
+        }
+
+        abstract void writeRecord(OutputStream out, boolean first) throws IOException;
+
+        void finish(Bytes trailer) throws IOException {
+            if(prologue == null) {
+                // No Customers at all
+                gap.writeTo(accepted);
+            }
+            trailer.writeTo(accepted);
+            if(quarantined) {
+                trailer.writeTo(quarantine);
+            }
+        }
+    }
+
+    private class XmlScreen extends Screen {
+
+        private final Bytes tag = new Bytes();
+
+        XmlScreen(InputStream in, OutputStream accepted, OutputStream quarantine, Counts counts) {
+            super(in, accepted, quarantine, counts);
+        }
+
+        @Override
+        void run() throws IOException {
+            for(int c = read(); c >= 0; c = read()) {
+                if(c != '<') {
+                    gap.add(c);
+                    continue;
+                }
+                tag.length = 0;
+                tag.add(c);
+                int kind = readMarkup(tag);
+                if(kind == START && isCustomer(tag)) {
+                    if(prologue == null) {
+                        prologue = gap.copy();
+                    }
+                    gap.writeTo(accepted);
+                    gap.length = 0;
+                    record.length = 0;
+                    record.add(tag);
+                    finishRecord(readRecord());
+                } else {
+                    gap.add(tag);
+                }
+            }
+            finish(prologue == null? new Bytes() : gap);
+        }
+
+        @Override
+        void writeRecord(OutputStream out, boolean first) throws IOException {
+            record.writeTo(out);
+        }
+
+        /**
+         * Reads the rest of a Customer element into record, checking each simple element as it goes
+         */
+        private FieldConstraint readRecord() throws IOException {
+
+            FieldConstraint failed = null;
+            int depth = 1;
+
+            // The innermost open element, if nothing but text has been seen inside it so far
+            int nameFrom = -1;
+            int nameTo = -1;
+            int textFrom = -1;
+            boolean escaped = false;
+
+            while(depth > 0) {
+                int c = readRequired();
+                if(c != '<') {
+                    record.add(c);
+                    escaped |= c == '&';
+                    continue;
+                }
+                int tagFrom = record.length;
+                record.add(c);
+                int kind = readMarkup(record);
+                if(kind == START) {
+                    depth++;
+                    nameFrom = localNameFrom(record.data, tagFrom);
+                    nameTo = nameEnd(record.data, nameFrom);
+                    // Attributes, such as xsi:nil, make the text harder to predict
+                    textFrom = record.data[nameTo] == '>'? record.length : -1;
+                    escaped = false;
+                } else if(kind == END) {
+                    depth--;
+                    if(failed == null && textFrom >= 0 && !escaped) {
+                        FieldConstraint constraint = constraintFor(record.data, nameFrom, nameTo);
+                        if(constraint != null && constraint.fails(record.data, textFrom, tagFrom)) {
+                            failed = constraint;
+                        }
+                    }
+                    textFrom = -1;
+                } else if(kind == EMPTY) {
+                    if(failed == null) {
+                        int from = localNameFrom(record.data, tagFrom);
+                        int to = nameEnd(record.data, from);
+                        FieldConstraint constraint = constraintFor(record.data, from, to);
+                        if(constraint != null && record.data[to] != ' ' && constraint.fails(record.data, 0, 0)) {
+                            failed = constraint;
+                        }
+                    }
+                    textFrom = -1;
+                } else {
+                    // Comments, CDATA and processing instructions
+                    escaped = true;
+                }
+            }
+            return failed;
+        }
+
+        private boolean isCustomer(Bytes tag) {
+            int from = localNameFrom(tag.data, 0);
+            int to = nameEnd(tag.data, from);
+            if(to - from != CUSTOMER.length) {
+                return false;
+            }
+            for(int i = 0; i < CUSTOMER.length; i++) {
+                if(tag.data[from + i] != CUSTOMER[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Reads the remainder of a markup construct, whose '<' is already in out
+         */
+        private int readMarkup(Bytes out) throws IOException {
+            int c = readRequired();
+            out.add(c);
+            if(c == '!') {
+                c = readRequired();
+                out.add(c);
+                if(c == '-') {
+                    readUntil(out, "-->");
+                } else if(c == '[') {
+                    readUntil(out, "]]>");
+                } else {
+                    readUntil(out, ">");
+                }
+                return OTHER;
+            } else if(c == '?') {
+                readUntil(out, "?>");
+                return OTHER;
+            }
+            boolean end = c == '/';
+            int quote = 0;
+            int previous = c;
+            while(true) {
+                c = readRequired();
+                out.add(c);
+                if(quote != 0) {
+                    if(c == quote) {
+                        quote = 0;
+                    }
+                } else if(c == '"' || c == '\'') {
+                    quote = c;
+                } else if(c == '>') {
+                    return end? END : previous == '/'? EMPTY : START;
+                }
+                previous = c;
+            }
+        }
+
+        private void readUntil(Bytes out, String terminator) throws IOException {
+            int from = out.length;
+            int last = terminator.charAt(terminator.length() - 1);
+            while(true) {
+                int c = readRequired();
+                out.add(c);
+                if(c == last && out.length - from >= terminator.length() && endsWith(out, terminator)) {
+                    return;
+                }
+            }
+        }
+
+        private boolean endsWith(Bytes out, String terminator) {
+            for(int i = 0, j = out.length - terminator.length(); i < terminator.length(); i++, j++) {
+                if(out.data[j] != terminator.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int localNameFrom(byte[] bytes, int tagFrom) {
+            int from = tagFrom + 1;
+            if(bytes[from] == '/') {
+                from++;
+            }
+            for(int i = from; ; i++) {
+                byte b = bytes[i];
+                if(b == ':') {
+                    return i + 1;
+                } else if(b == '>' || b == '/' || b == ' ' || b == '\t' || b == '\n' || b == '\r') {
+                    return from;
+                }
+            }
+        }
+
+        private int nameEnd(byte[] bytes, int from) {
+            int i = from;
+            while(bytes[i] != '>' && bytes[i] != '/' && bytes[i] != ' ' && bytes[i] != '\t' && bytes[i] != '\n' && bytes[i] != '\r') {
+                i++;
+            }
+            return i;
+        }
+    }
+
+    private static final int START = 0;
+    private static final int END = 1;
+    private static final int EMPTY = 2;
+    private static final int OTHER = 3;
+
+    private class JsonScreen extends Screen {
+
+        private boolean array;
+
+        JsonScreen(InputStream in, OutputStream accepted, OutputStream quarantine, Counts counts) {
+            super(in, accepted, quarantine, counts);
+        }
+
+        @Override
+        void run() throws IOException {
+
+            if(!findCustomers()) {
+                finish(new Bytes());
+                return;
+            }
+            prologue = gap.copy();
+            gap.writeTo(accepted);
+            gap.length = 0;
+
+            Bytes trailer = new Bytes();
+            while(true) {
+                int c = skipWhitespace();
+                if(c == '{') {
+                    record.length = 0;
+                    record.add(c);
+                    finishRecord(readRecord());
+                    if(!array) {
+                        break;
+                    }
+                    c = skipWhitespace();
+                    if(c == ',') {
+                        continue;
+                    }
+                }
+                if(c >= 0) {
+                    trailer.add(c);
+                }
+                break;
+            }
+            for(int c = read(); c >= 0; c = read()) {
+                trailer.add(c);
+            }
+            if(!array && counts.accepted == 0) {
+                // The only Customer was rejected; leave an empty array in its place
+                accepted.write('[');
+                accepted.write(']');
+            }
+            finish(trailer);
+        }
+
+        @Override
+        void writeRecord(OutputStream out, boolean first) throws IOException {
+            if(!first) {
+                out.write(',');
+            }
+            record.writeTo(out);
+        }
+
+        /**
+         * Copies input to gap up to and including the start of the CustomersFile's Customer value
+         */
+        private boolean findCustomers() throws IOException {
+            int depth = 0;
+            int keyFrom = -1;
+            int keyTo = -1;
+            for(int c = read(); c >= 0; c = read()) {
+                gap.add(c);
+                if(c == '"') {
+                    keyFrom = gap.length;
+                    readString(gap);
+                    keyTo = gap.length - 1;
+                } else if(c == '{' || c == '[') {
+                    depth++;
+                } else if(c == '}' || c == ']') {
+                    depth--;
+                } else if(c == ':' && depth == 2 && isCustomerKey(keyFrom, keyTo)) {
+                    c = skipWhitespace();
+                    if(c == '[') {
+                        gap.add(c);
+                        array = true;
+                        return true;
+                    } else if(c == '{') {
+                        // A single Customer rather than an array
+                        unread();
+                        return true;
+                    }
+                    if(c >= 0) {
+                        gap.add(c);
+                    }
+                }
+            }
+            return false;
+        }
+
+        private boolean isCustomerKey(int keyFrom, int keyTo) {
+            if(keyFrom < 0 || keyTo - keyFrom != CUSTOMER.length) {
+                return false;
+            }
+            for(int i = 0; i < CUSTOMER.length; i++) {
+                if(gap.data[keyFrom + i] != CUSTOMER[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Reads the rest of a Customer object into record, checking each string value against the
+         * constraint for its key
+         */
+        private FieldConstraint readRecord() throws IOException {
+
+            FieldConstraint failed = null;
+            FieldConstraint current = null;
+            int depth = 1;
+
+            // The last string read, which is either a key or a value depending on what follows
+            int stringFrom = -1;
+            int stringTo = -1;
+            boolean stringEscaped = false;
+
+            while(depth > 0) {
+                int c = readRequired();
+                record.add(c);
+                if(c == '"') {
+                    stringFrom = record.length;
+                    stringEscaped = readString(record);
+                    stringTo = record.length - 1;
+                    continue;
+                }
+                if(c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                    continue;
+                }
+                if(c == ':') {
+                    current = stringFrom >= 0? constraintFor(record.data, stringFrom, stringTo) : null;
+                } else if(stringFrom >= 0 && failed == null && current != null && !stringEscaped
+                          && current.fails(record.data, stringFrom, stringTo)) {
+                    failed = current;
+                }
+                if(c == '{' || c == '[') {
+                    depth++;
+                } else if(c == '}' || c == ']') {
+                    depth--;
+                }
+                stringFrom = -1;
+            }
+            return failed;
+        }
+
+        /**
+         * Reads the rest of a string, up to and including its closing quote, returning true if it held escapes
+         */
+        private boolean readString(Bytes out) throws IOException {
+            boolean escaped = false;
+            while(true) {
+                int c = readRequired();
+                out.add(c);
+                if(c == '"') {
+                    return escaped;
+                } else if(c == '\\') {
+                    escaped = true;
+                    out.add(readRequired());
+                }
+            }
+        }
+
+        private int skipWhitespace() throws IOException {
+            int c = read();
+            while(c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                c = read();
+            }
+            return c;
+        }
+    }
+
+}
@@ -0,0 +1,165 @@
+package prescreen;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * The length facets and StartsWithCapitalLetter rule of one simple-typed element, as read from a C24 data model.
+ *
+ * Each check is applied to the raw text of a field and is deliberately one-sided: it only fails when
+ * C24.validate would certainly fail too, whatever whitespace handling the parser applies. Text containing
+ * entity references or escapes isn't checked at all.
+ *
+ */
+public class FieldConstraint {
+
+    static final String STARTS_WITH_CAPITAL_LETTER = "StartsWithCapitalLetter";
+
+    private final String field;
+    private final byte[] name;
+    private final int minLength;
+    private final int maxLength;
+    private final boolean optional;
+    private final boolean startsWithCapital;
+
+    public FieldConstraint(String field, int minLength, int maxLength, boolean optional, boolean startsWithCapital) {
+        this.field = field;
+        this.name = ascii(field);
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.optional = optional;
+        this.startsWithCapital = startsWithCapital;
+    }
+
+    /**
+     * Reads the constraints on every simple-typed element from a data model (.dod) file. Element names
+     * are those used in XML and JSON, i.e. with the spaces removed.
+     */
+    public static List<FieldConstraint> fromModel(File model) throws IOException {
+
+        Document document;
+        try {
+            document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(model);
+        } catch(ParserConfigurationException ex) {
+            throw new IOException(ex);
+        } catch(SAXException ex) {
+            throw new IOException("Invalid model " + model, ex);
+        }
+
+        Map<String, int[]> lengths = new HashMap<String, int[]>();
+        Map<String, Boolean> capitals = new HashMap<String, Boolean>();
+
+        NodeList types = document.getElementsByTagName("atomicSimpleType");
+        for(int i = 0; i < types.getLength(); i++) {
+            Element type = (Element) types.item(i);
+            int[] length = {0, Integer.MAX_VALUE};
+            NodeList facets = type.getElementsByTagName("facet");
+            for(int j = 0; j < facets.getLength(); j++) {
+                Element facet = (Element) facets.item(j);
+                String value = facet.getElementsByTagName("value").item(0).getTextContent().trim();
+                if("min_length".equals(facet.getAttribute("facetType"))) {
+                    length[0] = Integer.parseInt(value);
+                } else if("max_length".equals(facet.getAttribute("facetType"))) {
+                    length[1] = Integer.parseInt(value);
+                }
+            }
+            boolean capital = false;
+            NodeList rules = type.getElementsByTagName("validationRuleRef");
+            for(int j = 0; j < rules.getLength(); j++) {
+                capital |= STARTS_WITH_CAPITAL_LETTER.equals(((Element) rules.item(j)).getAttribute("ref"));
+            }
+            lengths.put(type.getAttribute("name"), length);
+            capitals.put(type.getAttribute("name"), capital);
+        }
+
+        List<FieldConstraint> constraints = new ArrayList<FieldConstraint>();
+        NodeList elements = document.getElementsByTagName("element");
+        for(int i = 0; i < elements.getLength(); i++) {
+            Element element = (Element) elements.item(i);
+            int[] length = lengths.get(element.getAttribute("typeRef"));
+            if(length != null) {
+                constraints.add(new FieldConstraint(element.getAttribute("name").replace(" ", ""), length[0], length[1],
+                    "0".equals(element.getAttribute("min")), capitals.get(element.getAttribute("typeRef"))));
+            }
+        }
+        return constraints;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    boolean isNamed(byte[] bytes, int from, int to) {
+        if(to - from != name.length) {
+            return false;
+        }
+        for(int i = 0; i < name.length; i++) {
+            if(bytes[from + i] != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the UTF-8 text in bytes[from, to) certainly fails validation
+     */
+    boolean fails(byte[] bytes, int from, int to) {
+
+        // Upper bound on the length is the text as-is; the lower bound assumes all whitespace is dropped
+        int upper = 0;
+        int lower = 0;
+        int first = -1;
+        for(int i = from; i < to; i++) {
+            int b = bytes[i] & 0xFF;
+            if((b & 0xC0) == 0x80) {
+                continue;
+            }
+            // Four byte sequences are a surrogate pair in a String
+            int chars = b >= 0xF0? 2 : 1;
+            upper += chars;
+            if(b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+                lower += chars;
+                if(first < 0) {
+                    first = b;
+                }
+            }
+        }
+
+        if(lower > maxLength) {
+            return true;
+        }
+        // An empty optional element may well be treated as absent
+        if(upper < minLength && !(optional && lower == 0)) {
+            return true;
+        }
+        // Whitespace-only text might be trimmed to nothing, which the rule allows
+        return startsWithCapital && first >= 0 && (first < 'A' || first > 'Z');
+    }
+
+    private static byte[] ascii(String str) {
+        byte[] bytes = new byte[str.length()];
+        for(int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) str.charAt(i);
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return field + " [" + minLength + ".." + (maxLength == Integer.MAX_VALUE? "" : String.valueOf(maxLength)) + "]" + (startsWithCapital? " " + STARTS_WITH_CAPITAL_LETTER : "");
+    }
+
+}
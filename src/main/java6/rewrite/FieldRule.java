@@ -0,0 +1,166 @@
+package rewrite;
+
+/**
+ * Rewrites the value of a single element. Rules return the value they were given when they have nothing
+ * to change, so an unchanged record costs no allocation, and build any new value in the caller's buffer.
+ *
+ */
+abstract class FieldRule {
+
+    /**
+     * @param buffer scratch space owned by the calling listener
+     * @return the rewritten value, value itself if unchanged, or null to leave the element out
+     */
+    abstract String apply(String value, StringBuilder buffer);
+
+    static final class ReplacePrefix extends FieldRule {
+
+        private final String prefix;
+        private final String replacement;
+
+        ReplacePrefix(String prefix, String replacement) {
+            this.prefix = prefix;
+            this.replacement = replacement;
+        }
+
+        @Override
+        String apply(String value, StringBuilder buffer) {
+            if(value == null || !value.startsWith(prefix)) {
+                return value;
+            }
+            int rest = prefix.length();
+            while(rest < value.length() && value.charAt(rest) == ' ') {
+                rest++;
+            }
+            buffer.setLength(0);
+            return buffer.append(replacement).append(value, rest, value.length()).toString();
+        }
+    }
+
+    static final class Normalise extends FieldRule {
+
+        @Override
+        String apply(String value, StringBuilder buffer) {
+            if(value == null || isNormal(value)) {
+                return value;
+            }
+            buffer.setLength(0);
+            boolean space = false;
+            for(int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if(Character.isWhitespace(c)) {
+                    space = buffer.length() > 0;
+                } else {
+                    if(space) {
+                        buffer.append(' ');
+                        space = false;
+                    }
+                    buffer.append(c);
+                }
+            }
+            return buffer.toString();
+        }
+
+        private static boolean isNormal(String value) {
+            int last = value.length() - 1;
+            if(last < 0) {
+                return true;
+            }
+            if(Character.isWhitespace(value.charAt(0)) || Character.isWhitespace(value.charAt(last))) {
+                return false;
+            }
+            for(int i = 1; i < last; i++) {
+                char c = value.charAt(i);
+                if(Character.isWhitespace(c) && (c != ' ' || value.charAt(i + 1) == ' ')) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Replaces letters and digits with '*', leaving separators such as spaces and '+' in place
+     */
+    static final class Mask extends FieldRule {
+
+        private final int keepLast;
+
+        Mask(int keepLast) {
+            this.keepLast = keepLast;
+        }
+
+        @Override
+        String apply(String value, StringBuilder buffer) {
+            if(value == null) {
+                return null;
+            }
+            int masked = countLettersOrDigits(value, 0, value.length()) - keepLast;
+            if(masked <= 0) {
+                return value;
+            }
+            buffer.setLength(0);
+            mask(value, 0, value.length(), masked, buffer);
+            return buffer.toString();
+        }
+    }
+
+    /**
+     * Masks all but the first character of the local part of an email address, keeping the domain
+     */
+    static final class MaskEmail extends FieldRule {
+
+        @Override
+        String apply(String value, StringBuilder buffer) {
+            if(value == null) {
+                return null;
+            }
+            int at = value.indexOf('@');
+            if(at < 0) {
+                at = value.length();
+            }
+            int masked = countLettersOrDigits(value, 1, at);
+            if(masked == 0) {
+                return value;
+            }
+            buffer.setLength(0);
+            buffer.append(value.charAt(0));
+            mask(value, 1, at, masked, buffer);
+            return buffer.append(value, at, value.length()).toString();
+        }
+    }
+
+    static final class Drop extends FieldRule {
+
+        @Override
+        String apply(String value, StringBuilder buffer) {
+            return null;
+        }
+    }
+
+    private static int countLettersOrDigits(String value, int start, int end) {
+        int count = 0;
+        for(int i = start; i < end; i++) {
+            if(Character.isLetterOrDigit(value.charAt(i))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Appends value[start, end) to buffer with its first count letters and digits replaced by '*'
+     */
+    private static void mask(String value, int start, int end, int count, StringBuilder buffer) {
+        for(int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if(count > 0 && Character.isLetterOrDigit(c)) {
+                buffer.append('*');
+                count--;
+            } else {
+                buffer.append(c);
+            }
+        }
+    }
+
+}
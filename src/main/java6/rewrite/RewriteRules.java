@@ -0,0 +1,154 @@
+package rewrite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import biz.c24.io.api.data.ComplexDataType;
+import biz.c24.io.api.data.DataType;
+import biz.c24.io.api.data.Element;
+import biz.c24.io.api.presentation.MarshalListener;
+
+/**
+ * Declarative rewrites of the elements of a 'Process As Batch' type, applied to the marshaled output
+ * only. For example, to make telephone numbers UK-specific and hide contact details:
+ *
+ * <pre>
+ * MarshalListener listener = RewriteRules.forType(CustomerDataType.getInstance())
+ *                                        .replacePrefix("Telephone Number", "+44", "0")
+ *                                        .maskEmail("Email Address")
+ *                                        .mask("Fax Number", 4)
+ *                                        .newListener();
+ *
+ * C24.write(file).with(listener).to(out);
+ * </pre>
+ *
+ * Element names are those in the model, e.g. "Telephone Number" rather than the XML tag TelephoneNumber,
+ * and are checked when the rule is added. An element can have several rules, which run in the order they
+ * were added. Every rule but drop applies only to String values; others are written unchanged.
+ *
+ * Definitions are immutable; each rule returns a new one. Compiled listeners are cheap to create but each
+ * should only be used by one marshal at a time.
+ *
+ */
+public final class RewriteRules {
+
+    private final ComplexDataType type;
+    private final Map<String, List<FieldRule>> rules;
+
+    /**
+     * @param dataType a complex type, e.g. CustomerDataType.getInstance()
+     */
+    public static RewriteRules forType(DataType dataType) {
+        if(!(dataType instanceof ComplexDataType)) {
+            throw new IllegalArgumentException(dataType.getName() + " is not a complex type");
+        }
+        ComplexDataType type = (ComplexDataType) dataType;
+        for(int i = 0; i < type.getElementDeclCount(); i++) {
+            Element element = type.getElementDecl(i);
+            if(element.getMaxOccurs() != 1) {
+                throw new IllegalArgumentException(type.getName() + " has repeating element " + element.getName()
+                    + "; only types whose elements occur at most once can be rewritten");
+            }
+        }
+        return new RewriteRules(type, new LinkedHashMap<String, List<FieldRule>>());
+    }
+
+    private RewriteRules(ComplexDataType type, Map<String, List<FieldRule>> rules) {
+        this.type = type;
+        this.rules = rules;
+    }
+
+    /**
+     * Replaces prefix, and any spaces following it, with replacement. Equivalent to
+     * value.replaceFirst("^" + Pattern.quote(prefix) + "[ ]*", replacement).
+     */
+    public RewriteRules replacePrefix(String element, String prefix, String replacement) {
+        return with(element, new FieldRule.ReplacePrefix(prefix, replacement));
+    }
+
+    /**
+     * Trims leading and trailing whitespace and collapses every other run of whitespace to a single space
+     */
+    public RewriteRules normalise(String element) {
+        return with(element, new FieldRule.Normalise());
+    }
+
+    /**
+     * Replaces all but the last keepLast letters and digits with '*', keeping any other characters,
+     * so "+44 207 555 1234" with keepLast 4 becomes "+** *** *** 1234"
+     */
+    public RewriteRules mask(String element, int keepLast) {
+        if(keepLast < 0) {
+            throw new IllegalArgumentException("keepLast must not be negative");
+        }
+        return with(element, new FieldRule.Mask(keepLast));
+    }
+
+    /**
+     * Masks all but the first character of an email address's local part, so "customer12@c24.biz"
+     * becomes "c*********@c24.biz"
+     */
+    public RewriteRules maskEmail(String element) {
+        return with(element, new FieldRule.MaskEmail());
+    }
+
+    /**
+     * Leaves the element out of the output. Dropping a mandatory element produces output which won't validate.
+     */
+    public RewriteRules drop(String element) {
+        return with(element, new FieldRule.Drop());
+    }
+
+    /**
+     * Creates a MarshalListener which applies the rules to every object of this type that is marshaled
+     */
+    public MarshalListener newListener() {
+        String[] elements = new String[type.getElementDeclCount()];
+        FieldRule[][] compiled = new FieldRule[elements.length][];
+        for(int i = 0; i < elements.length; i++) {
+            elements[i] = type.getElementDecl(i).getName();
+            List<FieldRule> elementRules = rules.get(elements[i]);
+            if(elementRules != null) {
+                compiled[i] = elementRules.toArray(new FieldRule[elementRules.size()]);
+            }
+        }
+        return new RewritingListener(type, elements, compiled);
+    }
+
+    private RewriteRules with(String element, FieldRule rule) {
+        if(!declares(element)) {
+            throw new IllegalArgumentException(type.getName() + " has no element " + element
+                + "; expected one of " + Arrays.toString(elementNames()));
+        }
+        Map<String, List<FieldRule>> copy = new LinkedHashMap<String, List<FieldRule>>();
+        for(Map.Entry<String, List<FieldRule>> entry : rules.entrySet()) {
+            copy.put(entry.getKey(), new ArrayList<FieldRule>(entry.getValue()));
+        }
+        if(!copy.containsKey(element)) {
+            copy.put(element, new ArrayList<FieldRule>());
+        }
+        copy.get(element).add(rule);
+        return new RewriteRules(type, copy);
+    }
+
+    private boolean declares(String element) {
+        for(int i = 0; i < type.getElementDeclCount(); i++) {
+            if(type.getElementDecl(i).getName().equals(element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String[] elementNames() {
+        String[] names = new String[type.getElementDeclCount()];
+        for(int i = 0; i < names.length; i++) {
+            names[i] = type.getElementDecl(i).getName();
+        }
+        return names;
+    }
+
+}
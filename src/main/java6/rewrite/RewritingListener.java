@@ -0,0 +1,121 @@
+package rewrite;
+
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.data.ComplexDataType;
+import biz.c24.io.api.data.Element;
+import biz.c24.io.api.presentation.MarshalListener;
+import biz.c24.io.api.presentation.StreamingSink;
+
+/**
+ * The compiled form of RewriteRules.
+ *
+ * Objects the rules don't change are handed back to the Sink untouched. Otherwise the listener fills in a
+ * reusable object of the same class with the source's elements and the rewritten values, marshals that,
+ * then empties it again, so neither the source's values nor a clone are involved. Complex children such as
+ * a Customer's Address are shared rather than copied; setting them on the reusable object re-parents them,
+ * so they're handed back to the source before marshal returns.
+ *
+ */
+final class RewritingListener implements MarshalListener {
+
+    private final ComplexDataType type;
+    private final String[] elements;
+    private final FieldRule[][] rules;
+
+    private final Object[] rewritten;
+    private final StringBuilder buffer = new StringBuilder(64);
+
+    private ComplexDataObject target;
+    private Element targetDecl;
+
+    RewritingListener(ComplexDataType type, String[] elements, FieldRule[][] rules) {
+        this.type = type;
+        this.elements = elements;
+        this.rules = rules;
+        this.rewritten = new Object[elements.length];
+    }
+
+    @Override
+    public boolean marshal(ComplexDataObject value, StreamingSink sink) throws Exception {
+        Element decl = value.getDefiningElementDecl();
+        if(decl == null || decl.getType() != type) {
+            return false;
+        }
+
+        if(!rewrite(value)) {
+            // Nothing to change so let the Sink marshal it as normal
+            return false;
+        }
+
+        ComplexDataObject target = target(value, decl);
+        try {
+            for(int i = 0; i < elements.length; i++) {
+                Object element = rules[i] == null? value.getElement(elements[i], 0) : rewritten[i];
+                if(element != null) {
+                    target.setElement(elements[i], 0, element);
+                }
+            }
+            sink.marshal(target);
+        } finally {
+            for(int i = 0; i < elements.length; i++) {
+                target.setElement(elements[i], 0, null);
+                rewritten[i] = null;
+
+                Object element = value.getElement(elements[i], 0);
+                if(element instanceof ComplexDataObject) {
+                    ((ComplexDataObject) element).setParent(value, elements[i]);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs the rules over value's elements
+     *
+     * @return whether any of them changed
+     */
+    private boolean rewrite(ComplexDataObject value) {
+        boolean changed = false;
+        for(int i = 0; i < elements.length; i++) {
+            if(rules[i] != null) {
+                Object original = value.getElement(elements[i], 0);
+                if(original instanceof String) {
+                    String result = (String) original;
+                    for(FieldRule rule : rules[i]) {
+                        result = rule.apply(result, buffer);
+                    }
+                    rewritten[i] = result;
+                    changed |= result != original;
+                } else {
+                    // Absent, or not a String, which only a drop applies to
+                    rewritten[i] = drops(rules[i])? null : original;
+                    changed |= rewritten[i] != original;
+                }
+            }
+        }
+        return changed;
+    }
+
+    private static boolean drops(FieldRule[] rules) {
+        for(FieldRule rule : rules) {
+            if(rule instanceof FieldRule.Drop) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The reusable object, recreated only if the element being marshaled changes
+     */
+    private ComplexDataObject target(ComplexDataObject value, Element decl) throws Exception {
+        if(target == null || targetDecl != decl || target.getClass() != value.getClass()) {
+            target = value.getClass().getConstructor(Element.class).newInstance(decl);
+            targetDecl = decl;
+        }
+        target.setParent(value.getParent(), decl.getName());
+        return target;
+    }
+
+}
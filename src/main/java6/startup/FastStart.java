@@ -0,0 +1,203 @@
+package startup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import utils.CustomersFileGenerator;
+import biz.c24.io.api.C24;
+import biz.c24.io.api.data.ValidationException;
+import static biz.c24.io.api.C24.Format.*;
+import biz.c24.io.gettingstarted.contact.ContactDetailsFile;
+import biz.c24.io.gettingstarted.customer.CustomersDataModel;
+import biz.c24.io.gettingstarted.customer.CustomersFile;
+import biz.c24.io.gettingstarted.transform.GenerateContactListTransform;
+
+/**
+ * Moves the first-call costs of the generated model out of the first record.
+ *
+ * initialise() loads and initialises every class in the model in one go, including the DataModel and each
+ * *DataType and *Element singleton, which the C24 runtime otherwise builds lazily the first time a parse,
+ * validation or transform reaches them. warmUp() then runs a small generated file through parse, validate,
+ * transform, marshal and the Preon round trip, so the C24 runtime classes they use are loaded too and the
+ * hottest methods have been through the interpreter.
+ *
+ * Call start() before a batch job reads its first record or before a service reports itself ready.
+ *
+ * Loading the classes still means reading and verifying them. On JDK 13 and above the main method doubles
+ * as the training run for an AppCDS archive, which maps the loaded classes straight into the next JVM:
+ *
+ * <pre>
+ * java -XX:ArchiveClassesAtExit=c24.jsa -cp ... startup.FastStart
+ * java -XX:SharedArchiveFile=c24.jsa -cp ... YourJob
+ * </pre>
+ *
+ * The archive only holds classes from jars and is only used when the classpath matches the one it was
+ * created with; the faststart profile in the pom builds it from the packaged jar.
+ *
+ */
+public final class FastStart {
+
+    private static final String MODEL_PACKAGE = "biz/c24/io/gettingstarted/";
+
+    private static final int WARM_UP_CUSTOMERS = 20;
+    private static final int WARM_UP_ITERATIONS = 200;
+
+    private static boolean started;
+
+    private FastStart() {
+    }
+
+    /**
+     * Initialises the model and warms up the runtime, once per JVM
+     */
+    public static synchronized void start() throws IOException, ValidationException {
+        if(!started) {
+            initialise();
+            warmUp(WARM_UP_ITERATIONS);
+            started = true;
+        }
+    }
+
+    /**
+     * Loads and initialises every class of the generated model and creates its singletons
+     *
+     * @return the number of classes initialised
+     */
+    public static int initialise() throws IOException {
+        ClassLoader loader = CustomersDataModel.class.getClassLoader();
+        int initialised = 0;
+        for(String name : modelClasses()) {
+            try {
+                Class<?> type = Class.forName(name, true, loader);
+                Method getInstance = getInstance(type);
+                if(getInstance != null) {
+                    getInstance.invoke(null);
+                }
+                initialised++;
+            } catch(Exception ex) {
+                // Anything which can't be initialised up front is simply initialised on first use, as before
+            } catch(LinkageError err) {
+                // As above
+            }
+        }
+        return initialised;
+    }
+
+    /**
+     * Runs a small file through every stage the examples use. Each iteration parses WARM_UP_CUSTOMERS Customers.
+     */
+    public static void warmUp(int iterations) throws IOException, ValidationException {
+        StringWriter writer = new StringWriter();
+        CustomersFileGenerator.write(writer, WARM_UP_CUSTOMERS);
+        byte[] xml = writer.toString().getBytes("UTF-8");
+
+        GenerateContactListTransform xform = new GenerateContactListTransform();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+
+        for(int i = 0; i < iterations; i++) {
+            CustomersFile customers = C24.parse(CustomersFile.class).as(XML).from(new ByteArrayInputStream(xml));
+            C24.validate(customers);
+            ContactDetailsFile contactDetails = xform.transform(customers);
+
+            out.reset();
+            C24.write(contactDetails).as(JSON).to(out);
+            out.reset();
+            C24.write(contactDetails).as(XML).to(out);
+
+            out.reset();
+            C24.write(customers).as(JSON).to(out);
+            C24.parse(CustomersFile.class).as(JSON).from(new ByteArrayInputStream(out.toByteArray()));
+
+            C24.toCdo(customers.toPreon());
+        }
+    }
+
+    /**
+     * The training run for an AppCDS archive, or a quick way to see what fast start costs
+     */
+    public static void main(String[] args) throws IOException, ValidationException {
+        long start = System.nanoTime();
+        int classes = initialise();
+        long initialised = System.nanoTime();
+        warmUp(WARM_UP_ITERATIONS);
+        long warm = System.nanoTime();
+
+        System.out.println("Initialised " + classes + " model classes in " + (initialised - start) / 1000000 + "ms, warmed up in "
+            + (warm - initialised) / 1000000 + "ms");
+    }
+
+    private static Method getInstance(Class<?> type) {
+        try {
+            Method getInstance = type.getMethod("getInstance");
+            return Modifier.isStatic(getInstance.getModifiers())? getInstance : null;
+        } catch(NoSuchMethodException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * The names of the model classes, whether they come from the gettingstarted jar or were deployed into a directory
+     */
+    private static List<String> modelClasses() throws IOException {
+        List<String> names = new ArrayList<String>();
+
+        CodeSource source = CustomersDataModel.class.getProtectionDomain().getCodeSource();
+        if(source == null) {
+            return names;
+        }
+        File location;
+        try {
+            location = new File(source.getLocation().toURI());
+        } catch(URISyntaxException ex) {
+            throw new IOException("Unable to locate the model classes at " + source.getLocation(), ex);
+        }
+
+        if(location.isDirectory()) {
+            addClasses(new File(location, MODEL_PACKAGE), MODEL_PACKAGE, names);
+        } else {
+            JarFile jar = new JarFile(location);
+            try {
+                for(Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements();) {
+                    String entry = entries.nextElement().getName();
+                    if(entry.startsWith(MODEL_PACKAGE) && entry.endsWith(".class")) {
+                        names.add(toClassName(entry));
+                    }
+                }
+            } finally {
+                jar.close();
+            }
+        }
+        return names;
+    }
+
+    private static void addClasses(File directory, String path, List<String> names) {
+        File[] files = directory.listFiles();
+        if(files == null) {
+            return;
+        }
+        for(File file : files) {
+            if(file.isDirectory()) {
+                addClasses(file, path + file.getName() + "/", names);
+            } else if(file.getName().endsWith(".class")) {
+                names.add(toClassName(path + file.getName()));
+            }
+        }
+    }
+
+    private static String toClassName(String path) {
+        return path.substring(0, path.length() - ".class".length()).replace('/', '.');
+    }
+
+}
@@ -0,0 +1,46 @@
+package startup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+
+import utils.CustomersFileGenerator;
+import biz.c24.io.api.C24;
+import static biz.c24.io.api.C24.Format.*;
+import biz.c24.io.gettingstarted.contact.ContactDetailsFile;
+import biz.c24.io.gettingstarted.customer.CustomersFile;
+import biz.c24.io.gettingstarted.transform.GenerateContactListTransform;
+
+/**
+ * The short-lived job launched by StartupBenchmark: it prints "ready" once started, then "first" once it
+ * has parsed, validated, transformed and written its first Customer.
+ *
+ * Pass --fast-start to call FastStart.start() before reporting ready.
+ *
+ */
+public class FirstRecord {
+
+    public static final String FAST_START = "--fast-start";
+    static final String READY = "ready";
+    static final String FIRST = "first";
+
+    public static void main(String[] args) throws Exception {
+
+        if(args.length > 0 && FAST_START.equals(args[0])) {
+            FastStart.start();
+        }
+        System.out.println(READY);
+        System.out.flush();
+
+        StringWriter writer = new StringWriter();
+        CustomersFileGenerator.write(writer, 1);
+        CustomersFile customers = C24.parse(CustomersFile.class).as(XML).from(new ByteArrayInputStream(writer.toString().getBytes("UTF-8")));
+        ContactDetailsFile contactDetails = new GenerateContactListTransform().transform(C24.validate(customers));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        C24.write(contactDetails).as(JSON).to(out);
+
+        System.out.println(FIRST + " " + out.size());
+        System.out.flush();
+    }
+
+}
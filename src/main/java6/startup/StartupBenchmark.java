@@ -0,0 +1,120 @@
+package startup;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures time-to-first-record for a freshly launched JVM, with fast start off and on, with and without an
+ * AppCDS archive.
+ *
+ * Each run launches FirstRecord in a new JVM on this JVM's classpath and times, from launch, when it reports
+ * ready and when it has written its first record. JMH can't measure this as its forks pay for their own
+ * harness and run from the classes directory, which AppCDS won't archive.
+ *
+ * Arguments are the archive created by FastStart's training run, if any, and the number of runs per mode
+ * (default 10). The faststart profile in the pom runs it with a matching archive.
+ *
+ */
+public class StartupBenchmark {
+
+    public static void main(String[] args) throws Exception {
+
+        File archive = args.length > 0? new File(args[0]) : null;
+        int runs = args.length > 1? Integer.parseInt(args[1]) : 10;
+
+        run("cold", runs);
+        run("fast start", runs, FirstRecord.FAST_START);
+
+        if(archive == null || !archive.exists()) {
+            System.out.println("No AppCDS archive; create one with java -XX:ArchiveClassesAtExit=<archive> startup.FastStart");
+            return;
+        }
+        String sharedArchive = "-XX:SharedArchiveFile=" + archive.getPath();
+        run("AppCDS", runs, sharedArchive);
+        run("fast start + AppCDS", runs, sharedArchive, FirstRecord.FAST_START);
+    }
+
+    /**
+     * @param options JVM options, followed by FirstRecord's arguments
+     */
+    private static void run(String mode, int runs, String... options) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<String>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        for(String option : options) {
+            if(option.startsWith("-XX:")) {
+                command.add(option);
+            }
+        }
+        command.add("-classpath");
+        command.add(System.getProperty("java.class.path"));
+        command.add(FirstRecord.class.getName());
+        for(String option : options) {
+            if(!option.startsWith("-XX:")) {
+                command.add(option);
+            }
+        }
+
+        // The first launch pulls the jars into the page cache, so it's reported but not counted
+        String output = launch(command, new long[2]);
+        if(output.length() > 0) {
+            System.out.print(output);
+        }
+
+        long[] ready = new long[runs];
+        long[] first = new long[runs];
+        long[] times = new long[2];
+        for(int i = 0; i < runs; i++) {
+            launch(command, times);
+            ready[i] = times[0];
+            first[i] = times[1];
+        }
+        Arrays.sort(ready);
+        Arrays.sort(first);
+
+        System.out.println(String.format("%-20s ready %5dms  first record %5dms (median of %d, best %dms)",
+            mode, ready[runs / 2] / 1000000, first[runs / 2] / 1000000, runs, first[0] / 1000000));
+    }
+
+    /**
+     * Launches the command and records the nanoseconds to ready and to the first record in times
+     *
+     * @return anything else the JVM printed, such as AppCDS warnings
+     */
+    private static String launch(List<String> command, long[] times) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+
+        long ready = -1;
+        long first = -1;
+        StringBuilder output = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        try {
+            for(String line = reader.readLine(); line != null; line = reader.readLine()) {
+                long now = System.nanoTime() - start;
+                if(line.equals(FirstRecord.READY)) {
+                    ready = now;
+                } else if(line.startsWith(FirstRecord.FIRST)) {
+                    first = now;
+                } else {
+                    output.append(line).append('\n');
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        int exit = process.waitFor();
+        if(exit != 0 || ready < 0 || first < 0) {
+            throw new IOException(command + " exited with " + exit + ":\n" + output);
+        }
+        times[0] = ready;
+        times[1] = first;
+        return output.toString();
+    }
+
+}
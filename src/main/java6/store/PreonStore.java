@@ -0,0 +1,329 @@
+package store;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import biz.c24.io.api.data.preon.PreonDataObject;
+
+/**
+ * An append-only, memory-mapped file of Preons.
+ *
+ * Each Preon's buffer is stored as a frame of [length][crc32][preon bytes] in name.data, and the
+ * position of every frame is recorded in name.index so a restarted process can get straight back to
+ * its Preons without parsing or validating anything.
+ *
+ * Appends are single-writer and become durable on sync(), which forces the data, then the index, and
+ * then records the number of synced entries in name.synced. On open the synced entries are trusted as
+ * they are, so reopening a large store doesn't read its data. Only the entries after them are checked
+ * against their frames' headers and checksums, the index being truncated at the first which doesn't
+ * match, and any complete frames written after the last index entry are then recovered, so a crash at
+ * any point loses at most the unsynced tail. Reads may come from any number of threads.
+ *
+ */
+public class PreonStore<T extends PreonDataObject> implements Closeable {
+
+    /**
+     * Creates a typed Preon over a buffer read back from the store
+     */
+    public interface PreonFactory<T> {
+        T create(byte[] data);
+    }
+
+    public static final PreonFactory<biz.c24.io.gettingstarted.customer.preon.Customer> CUSTOMER =
+        new PreonFactory<biz.c24.io.gettingstarted.customer.preon.Customer>() {
+
+            @Override
+            public biz.c24.io.gettingstarted.customer.preon.Customer create(byte[] data) {
+                return new biz.c24.io.gettingstarted.customer.preon.Customer(data, 0);
+            }
+        };
+
+    public static final PreonFactory<biz.c24.io.gettingstarted.customer.preon.CustomersFile> CUSTOMERS_FILE =
+        new PreonFactory<biz.c24.io.gettingstarted.customer.preon.CustomersFile>() {
+
+            @Override
+            public biz.c24.io.gettingstarted.customer.preon.CustomersFile create(byte[] data) {
+                return new biz.c24.io.gettingstarted.customer.preon.CustomersFile(data, 0);
+            }
+        };
+
+    public static final PreonFactory<biz.c24.io.gettingstarted.contact.preon.ContactDetailsFile.ContactDetails> CONTACT_DETAILS =
+        new PreonFactory<biz.c24.io.gettingstarted.contact.preon.ContactDetailsFile.ContactDetails>() {
+
+            @Override
+            public biz.c24.io.gettingstarted.contact.preon.ContactDetailsFile.ContactDetails create(byte[] data) {
+                return new biz.c24.io.gettingstarted.contact.preon.ContactDetailsFile.ContactDetails(data, 0);
+            }
+        };
+
+    private static final int FRAME_HEADER = 8;
+    private static final int INDEX_ENTRY = 12;
+    private static final int SYNCED_MARKER = 8;
+
+    /**
+     * Size of each read-only mapping. Frames which straddle a segment boundary, or which lie in the
+     * last, partially written segment, are read through the channel instead.
+     */
+    private static final long SEGMENT_SIZE = 256L * 1024 * 1024;
+
+    private final PreonFactory<T> factory;
+    private final RandomAccessFile dataFile;
+    private final RandomAccessFile indexFile;
+    private final RandomAccessFile syncedFile;
+    private final FileChannel data;
+    private final FileChannel index;
+    private final FileChannel synced;
+
+    private volatile long[] offsets;
+    private volatile int[] lengths;
+    private volatile int size;
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private volatile long dataEnd;
+
+    private PreonStore(File directory, String name, PreonFactory<T> factory) throws IOException {
+        this.factory = factory;
+        directory.mkdirs();
+        dataFile = new RandomAccessFile(new File(directory, name + ".data"), "rw");
+        indexFile = new RandomAccessFile(new File(directory, name + ".index"), "rw");
+        syncedFile = new RandomAccessFile(new File(directory, name + ".synced"), "rw");
+        data = dataFile.getChannel();
+        index = indexFile.getChannel();
+        synced = syncedFile.getChannel();
+        recover();
+    }
+
+    public static <T extends PreonDataObject> PreonStore<T> open(File directory, String name, PreonFactory<T> factory) throws IOException {
+        return new PreonStore<T>(directory, name, factory);
+    }
+
+    /**
+     * Appends the Preon's buffer, returning the record number to retrieve it with
+     */
+    public synchronized int append(PreonDataObject preon) throws IOException {
+
+        byte[] bytes = preon.getPreonData();
+        int offset = preon.getBufferOffset();
+        int length = bytes.length - offset;
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER + length);
+        frame.putInt(length).putInt((int) crc.getValue()).put(bytes, offset, length).flip();
+        writeFully(data, frame, dataEnd);
+
+        long payload = dataEnd + FRAME_HEADER;
+        dataEnd += frame.capacity();
+
+        writeIndexEntry(size, payload, length);
+        return addEntry(payload, length);
+    }
+
+    /**
+     * Makes all appended Preons durable. The data is forced before the index so that the index never
+     * refers to data which didn't make it to disk, and both before the synced entries are recorded.
+     */
+    public synchronized void sync() throws IOException {
+        data.force(false);
+        index.force(false);
+        // The count and its complement, so a torn write reads as nothing synced rather than a wrong count
+        ByteBuffer marker = ByteBuffer.allocate(SYNCED_MARKER);
+        marker.putInt(size).putInt(~size).flip();
+        writeFully(synced, marker, 0);
+        synced.force(false);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public T get(int record) throws IOException {
+        return factory.create(read(record));
+    }
+
+    /**
+     * Returns a copy of the stored Preon buffer
+     */
+    public byte[] read(int record) throws IOException {
+
+        if(record < 0 || record >= size) {
+            throw new IndexOutOfBoundsException("Record " + record + " of " + size);
+        }
+        long offset = offsets[record];
+        int length = lengths[record];
+        byte[] bytes = new byte[length];
+
+        int segment = (int) (offset / SEGMENT_SIZE);
+        if(offset + length <= (segment + 1) * SEGMENT_SIZE && isMapped(segment)) {
+            // duplicate() gives this thread its own position over the shared mapping
+            ByteBuffer buffer = segments[segment].duplicate();
+            buffer.position((int) (offset - segment * SEGMENT_SIZE));
+            buffer.get(bytes);
+        } else {
+            readFully(data, ByteBuffer.wrap(bytes), offset);
+        }
+        return bytes;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            dataFile.close();
+            indexFile.close();
+            syncedFile.close();
+        }
+    }
+
+    private int addEntry(long offset, int length) {
+        long[] currentOffsets = offsets;
+        int[] currentLengths = lengths;
+        if(size == currentOffsets.length) {
+            currentOffsets = Arrays.copyOf(currentOffsets, currentOffsets.length * 2);
+            currentLengths = Arrays.copyOf(currentLengths, currentLengths.length * 2);
+        }
+        currentOffsets[size] = offset;
+        currentLengths[size] = length;
+        lengths = currentLengths;
+        offsets = currentOffsets;
+        // Publishing size last makes the entry visible to readers only once it is complete
+        return size++;
+    }
+
+    /**
+     * Maps the segment if it has been completely written
+     */
+    private boolean isMapped(int segment) throws IOException {
+        if(segment < segments.length) {
+            return true;
+        }
+        if((segment + 1) * SEGMENT_SIZE > dataEnd) {
+            return false;
+        }
+        synchronized(this) {
+            MappedByteBuffer[] current = segments;
+            int complete = (int) (dataEnd / SEGMENT_SIZE);
+            if(complete > current.length) {
+                MappedByteBuffer[] mapped = Arrays.copyOf(current, complete);
+                for(int i = current.length; i < complete; i++) {
+                    mapped[i] = data.map(FileChannel.MapMode.READ_ONLY, i * SEGMENT_SIZE, SEGMENT_SIZE);
+                }
+                segments = mapped;
+            }
+        }
+        return true;
+    }
+
+    private void recover() throws IOException {
+
+        offsets = new long[1024];
+        lengths = new int[1024];
+
+        long dataLength = data.size();
+        int entries = (int) (index.size() / INDEX_ENTRY);
+
+        // Every indexed frame must follow on from the one before. Those after the last sync must also match
+        // their header and checksum; the first that doesn't, and everything after it, is dropped
+        int trusted = syncedEntries();
+        long end = 0;
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY);
+        for(int i = 0; i < entries; i++) {
+            entry.clear();
+            readFully(index, entry, (long) i * INDEX_ENTRY);
+            entry.flip();
+            long offset = entry.getLong();
+            int length = entry.getInt();
+            if(offset != end + FRAME_HEADER || offset + length > dataLength) {
+                break;
+            }
+            if(i >= trusted && frameLength(end, dataLength) != length) {
+                break;
+            }
+            addEntry(offset, length);
+            end = offset + length;
+        }
+        index.truncate((long) size * INDEX_ENTRY);
+
+        // Pick up any complete frames which were written after the index was last updated
+        int length;
+        while((length = frameLength(end, dataLength)) >= 0) {
+            writeIndexEntry(size, end + FRAME_HEADER, length);
+            addEntry(end + FRAME_HEADER, length);
+            end += FRAME_HEADER + length;
+        }
+
+        // Discard any partial frame left by a crash mid-append
+        data.truncate(end);
+        dataEnd = end;
+        sync();
+    }
+
+    /**
+     * The number of index entries recorded by the last sync, or 0 if there's no valid record
+     */
+    private int syncedEntries() throws IOException {
+        if(synced.size() < SYNCED_MARKER) {
+            return 0;
+        }
+        ByteBuffer marker = ByteBuffer.allocate(SYNCED_MARKER);
+        readFully(synced, marker, 0);
+        marker.flip();
+        int count = marker.getInt();
+        return marker.getInt() == ~count? count : 0;
+    }
+
+    /**
+     * The length of the frame at position, or -1 if it is incomplete or fails its checksum
+     */
+    private int frameLength(long position, long dataLength) throws IOException {
+
+        if(position + FRAME_HEADER > dataLength) {
+            return -1;
+        }
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER);
+        readFully(data, header, position);
+        header.flip();
+        int length = header.getInt();
+        int checksum = header.getInt();
+        if(length < 0 || position + FRAME_HEADER + length > dataLength) {
+            return -1;
+        }
+        byte[] bytes = new byte[length];
+        readFully(data, ByteBuffer.wrap(bytes), position + FRAME_HEADER);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue() == checksum? length : -1;
+    }
+
+    private void writeIndexEntry(int record, long offset, int length) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY);
+        entry.putLong(offset).putInt(length).flip();
+        writeFully(index, entry, (long) record * INDEX_ENTRY);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if(read < 0) {
+                throw new EOFException();
+            }
+            position += read;
+        }
+    }
+
+}
@@ -0,0 +1,130 @@
+package streaming;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import biz.c24.io.api.C24;
+import biz.c24.io.api.C24.Format;
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.presentation.ParseListener;
+import biz.c24.io.gettingstarted.customer.Customer;
+import biz.c24.io.gettingstarted.customer.CustomerDataType;
+import biz.c24.io.gettingstarted.customer.CustomersFile;
+
+/**
+ * Parses a CustomersFile one Customer at a time.
+ *
+ * This is the input-side counterpart of the MarshalListener example in GettingStartedCDO: Customer is
+ * switched to 'Process As Batch' and a ParseListener hands each Customer to the caller as soon as it
+ * has been parsed. The listener then discards it rather than adding it to the CustomersFile, so peak
+ * memory is bounded by a single Customer regardless of the size of the file.
+ *
+ * 'Process As Batch' is a property of the CustomerDataType singleton, so it is restored once the parse
+ * completes. Other threads parsing a CustomersFile at the same time will see it switched on too.
+ *
+ */
+public class CustomerStreamer {
+
+    /**
+     * Default number of parsed Customers an iterator will buffer ahead of the caller
+     */
+    public static final int DEFAULT_READ_AHEAD = 256;
+
+    public static void stream(File file, RecordHandler<Customer> handler) throws IOException {
+        stream(file, null, null, handler);
+    }
+
+    public static void stream(InputStream in, Format format, RecordHandler<Customer> handler) throws IOException {
+        stream(null, in, format, handler);
+    }
+
+    private static void stream(File file, InputStream in, Format format, final RecordHandler<Customer> handler) throws IOException {
+
+        // Normally you'd set this property in your model via the Studio. The type is a shared singleton so
+        // put it back afterwards; otherwise every later parse of a CustomersFile would also batch.
+        CustomerDataType type = (CustomerDataType)CustomerDataType.getInstance();
+        boolean processAsBatch = type.isProcessAsBatch();
+        type.setProcessAsBatch(true);
+
+        ParseListener listener = new ParseListener() {
+
+            @Override
+            public ComplexDataObject processed(ComplexDataObject value) {
+                if(value instanceof Customer) {
+                    try {
+                        handler.handle((Customer) value);
+                    } catch(RuntimeException ex) {
+                        throw ex;
+                    } catch(Exception ex) {
+                        throw new HandlerException(ex);
+                    }
+                    // Returning null stops the Customer being added to the CustomersFile
+                    return null;
+                } else {
+                    return value;
+                }
+            }
+        };
+
+        try {
+            if(file != null) {
+                C24.parse(CustomersFile.class).with(listener).from(file);
+            } else {
+                C24.parse(CustomersFile.class).as(format).with(listener).from(in);
+            }
+        } catch(HandlerException ex) {
+            throw new IOException(ex.getCause());
+        } finally {
+            type.setProcessAsBatch(processAsBatch);
+        }
+    }
+
+    public static void streamPreons(File file, final RecordHandler<biz.c24.io.gettingstarted.customer.preon.Customer> handler) throws IOException {
+
+        stream(file, new RecordHandler<Customer>() {
+
+            @Override
+            public void handle(Customer customer) throws Exception {
+                handler.handle(customer.toPreon());
+            }
+        });
+    }
+
+    public static StreamingIterator<Customer> iterator(File file) {
+        return iterator(file, DEFAULT_READ_AHEAD);
+    }
+
+    public static StreamingIterator<Customer> iterator(final File file, int readAhead) {
+        return new StreamingIterator<Customer>(readAhead) {
+
+            @Override
+            protected void produce(RecordHandler<Customer> sink) throws IOException {
+                stream(file, sink);
+            }
+        };
+    }
+
+    public static StreamingIterator<biz.c24.io.gettingstarted.customer.preon.Customer> preonIterator(final File file) {
+        return new StreamingIterator<biz.c24.io.gettingstarted.customer.preon.Customer>(DEFAULT_READ_AHEAD) {
+
+            @Override
+            protected void produce(RecordHandler<biz.c24.io.gettingstarted.customer.preon.Customer> sink) throws IOException {
+                streamPreons(file, sink);
+            }
+        };
+    }
+
+    /**
+     * Carries a checked exception thrown by a RecordHandler out through the parser
+     */
+    private static class HandlerException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        HandlerException(Exception cause) {
+            super(cause);
+        }
+    }
+
+}
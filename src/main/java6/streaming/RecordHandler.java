@@ -0,0 +1,10 @@
+package streaming;
+
+/**
+ * Callback invoked once per record as a file is streamed.
+ */
+public interface RecordHandler<T> {
+
+    void handle(T record) throws Exception;
+
+}
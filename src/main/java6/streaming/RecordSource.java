@@ -0,0 +1,10 @@
+package streaming;
+
+/**
+ * Something which pushes records, one at a time, to a RecordHandler
+ */
+public interface RecordSource<T> {
+
+    void produce(RecordHandler<T> handler) throws Exception;
+
+}
@@ -0,0 +1,113 @@
+package streaming;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Turns a push-style producer into a pull-style Iterator.
+ *
+ * The producer runs on its own thread and blocks once readAhead records are waiting, so the
+ * caller controls how much of the file is held in memory at any one time. Failures in the
+ * producer are rethrown from hasNext(). Callers that stop early must call close().
+ *
+ */
+public abstract class StreamingIterator<T> implements Iterator<T>, Closeable {
+
+    private static final Object END = new Object();
+
+    private final BlockingQueue<Object> queue;
+    private final Thread producer;
+
+    private volatile Throwable failure;
+    private volatile boolean closed;
+    private Object next;
+
+    protected StreamingIterator(int readAhead) {
+        queue = new ArrayBlockingQueue<Object>(readAhead);
+        producer = new Thread(getClass().getSimpleName() + "-producer") {
+
+            @Override
+            public void run() {
+                try {
+                    produce(new RecordHandler<T>() {
+
+                        @Override
+                        public void handle(T record) throws Exception {
+                            if(closed) {
+                                throw new InterruptedException("Iterator closed");
+                            }
+                            queue.put(record);
+                        }
+                    });
+                } catch(Throwable t) {
+                    if(!closed) {
+                        failure = t;
+                    }
+                } finally {
+                    try {
+                        if(!closed) {
+                            queue.put(END);
+                        }
+                    } catch(InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    protected abstract void produce(RecordHandler<T> sink) throws Exception;
+
+    @Override
+    public boolean hasNext() {
+        if(next == null) {
+            if(closed) {
+                return false;
+            }
+            try {
+                next = queue.take();
+            } catch(InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the next record", ex);
+            }
+        }
+        if(next == END) {
+            if(failure != null) {
+                throw new IllegalStateException("Failed to read records", failure);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next() {
+        if(!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T record = (T) next;
+        next = null;
+        return record;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+        if(!closed) {
+            closed = true;
+            producer.interrupt();
+            queue.clear();
+        }
+    }
+
+}
@@ -0,0 +1,182 @@
+package validation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import biz.c24.io.api.C24;
+import biz.c24.io.api.data.ValidationEvent;
+import biz.c24.io.api.data.ValidationException;
+import biz.c24.io.gettingstarted.customer.Customer;
+import biz.c24.io.gettingstarted.customer.CustomersFile;
+
+/**
+ * Validates the Customers in a CustomersFile across several threads.
+ *
+ * The Customers are split into many more slices than there are threads so that a thread which
+ * finishes early simply picks up the next slice. Results are reassembled in slice order so both
+ * methods report exactly what C24.validate and C24.validateFully would on a single thread.
+ *
+ */
+public class ParallelValidator {
+
+    private static final int SLICES_PER_THREAD = 4;
+
+    private final ExecutorService pool;
+    private final int threads;
+
+    public ParallelValidator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelValidator(int threads) {
+        this(Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "validator-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }), threads);
+    }
+
+    public ParallelValidator(ExecutorService pool, int threads) {
+        this.pool = pool;
+        this.threads = threads;
+    }
+
+    /**
+     * Equivalent to C24.validateFully(file), returning the events in the same order.
+     * Never returns null; a valid file gives an empty array.
+     */
+    public ValidationEvent[] validateFully(CustomersFile file) {
+
+        final Customer[] customers = file.getCustomer();
+        int sliceSize = sliceSize(customers.length);
+
+        if(customers.length <= sliceSize) {
+            // Nothing to gain; this also reports any failures on the (empty) CustomersFile itself
+            ValidationEvent[] failures = C24.validateFully(file);
+            return failures != null? failures : new ValidationEvent[0];
+        }
+
+        List<Future<List<ValidationEvent>>> slices = new ArrayList<Future<List<ValidationEvent>>>();
+        for(int start = 0; start < customers.length; start += sliceSize) {
+            final int from = start;
+            final int to = Math.min(start + sliceSize, customers.length);
+
+            slices.add(pool.submit(new Callable<List<ValidationEvent>>() {
+
+                @Override
+                public List<ValidationEvent> call() {
+                    List<ValidationEvent> events = new ArrayList<ValidationEvent>();
+                    for(int i = from; i < to; i++) {
+                        ValidationEvent[] failures = C24.validateFully(customers[i]);
+                        if(failures != null) {
+                            events.addAll(Arrays.asList(failures));
+                        }
+                    }
+                    return events;
+                }
+            }));
+        }
+
+        List<ValidationEvent> events = new ArrayList<ValidationEvent>();
+        for(Future<List<ValidationEvent>> slice : slices) {
+            events.addAll(get(slice));
+        }
+        return events.toArray(new ValidationEvent[events.size()]);
+    }
+
+    /**
+     * Equivalent to C24.validate(file).
+     *
+     * As soon as a violation is found, slices later in the document are abandoned. Slices earlier in the
+     * document carry on, as they may hold an earlier violation, so the exception thrown is always the
+     * one the serial call would have thrown.
+     */
+    public void validate(CustomersFile file) throws ValidationException {
+
+        final Customer[] customers = file.getCustomer();
+        int sliceSize = sliceSize(customers.length);
+
+        if(customers.length <= sliceSize) {
+            C24.validate(file);
+            return;
+        }
+
+        final AtomicInteger firstFailedSlice = new AtomicInteger(Integer.MAX_VALUE);
+        List<Future<ValidationException>> slices = new ArrayList<Future<ValidationException>>();
+
+        for(int start = 0; start < customers.length; start += sliceSize) {
+            final int slice = slices.size();
+            final int from = start;
+            final int to = Math.min(start + sliceSize, customers.length);
+
+            slices.add(pool.submit(new Callable<ValidationException>() {
+
+                @Override
+                public ValidationException call() {
+                    for(int i = from; i < to && slice < firstFailedSlice.get(); i++) {
+                        try {
+                            C24.validate(customers[i]);
+                        } catch(ValidationException vEx) {
+                            int current;
+                            while(slice < (current = firstFailedSlice.get()) && !firstFailedSlice.compareAndSet(current, slice));
+                            return vEx;
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        // Slices complete in any order, but the earliest failing one is the answer
+        for(Future<ValidationException> slice : slices) {
+            ValidationException vEx = get(slice);
+            if(vEx != null) {
+                cancelAll(slices);
+                throw vEx;
+            }
+        }
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private int sliceSize(int customers) {
+        return Math.max(1, (customers + threads * SLICES_PER_THREAD - 1) / (threads * SLICES_PER_THREAD));
+    }
+
+    private static void cancelAll(List<? extends Future<?>> slices) {
+        for(Future<?> slice : slices) {
+            slice.cancel(false);
+        }
+    }
+
+    private static <T> T get(Future<T> future) {
+        try {
+            return future.get();
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during validation", ex);
+        } catch(ExecutionException ex) {
+            if(ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+package validation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import biz.c24.io.api.C24;
+import biz.c24.io.api.data.ValidationEvent;
+import biz.c24.io.gettingstarted.customer.Address;
+import biz.c24.io.gettingstarted.customer.Customer;
+import biz.c24.io.gettingstarted.customer.CustomersFile;
+
+/**
+ * Re-validates only the Customers whose values differ from a snapshot taken when they were last validated.
+ *
+ * Changes are detected, not tracked: every call still reads each Customer's fields, its Address and the
+ * Address lines, and compares them with the snapshot. That is far cheaper than validating, but it is
+ * still a pass over the whole file. A matching Customer reuses its events and nothing is copied; the
+ * rest, along with Customers added to the file since, are validated afresh and snapshotted again.
+ * Setters replace values rather than modifying them, so the comparison is exact and the result is always
+ * the same set of events, in the same order, as C24.validateFully(file).
+ *
+ * A change to an Address re-validates its owning Customer as a whole. Not thread-safe; use one
+ * instance per document being enriched.
+ *
+ */
+public class SnapshotValidator {
+
+    private Map<Customer, Snapshot> snapshots = new IdentityHashMap<Customer, Snapshot>();
+    private int revalidated;
+
+    private static class Snapshot {
+
+        final Address address;
+        final String[] addressLines;
+        final String[] values;
+        final ValidationEvent[] events;
+
+        Snapshot(Customer customer, Address address, ValidationEvent[] events) {
+            String[] lines = address != null? address.getAddressLine() : null;
+            this.address = address;
+            // Copied, as the array may be the Address' own
+            this.addressLines = lines != null? lines.clone() : null;
+            this.values = new String[] {
+                customer.getCustomerNumber(),
+                customer.getCustomerAcronym(),
+                customer.getPostZipCode(),
+                customer.getTelephoneNumber(),
+                customer.getEmailAddress(),
+                customer.getBIC(),
+                customer.getFaxNumber(),
+                customer.getTelexNumber(),
+                customer.getCountryOfResidence(),
+                customer.getFedwireCode(),
+                customer.getChipsParticipantCode(),
+                customer.getChipsUID(),
+                customer.getSortCode(),
+                customer.getBankleitzhalCode()
+            };
+            this.events = events;
+        }
+
+        /**
+         * Compares in the same order as values, without copying anything
+         */
+        boolean matches(Customer customer, Address address) {
+            return this.address == address
+                && Arrays.equals(addressLines, address != null? address.getAddressLine() : null)
+                && same(values[0], customer.getCustomerNumber())
+                && same(values[1], customer.getCustomerAcronym())
+                && same(values[2], customer.getPostZipCode())
+                && same(values[3], customer.getTelephoneNumber())
+                && same(values[4], customer.getEmailAddress())
+                && same(values[5], customer.getBIC())
+                && same(values[6], customer.getFaxNumber())
+                && same(values[7], customer.getTelexNumber())
+                && same(values[8], customer.getCountryOfResidence())
+                && same(values[9], customer.getFedwireCode())
+                && same(values[10], customer.getChipsParticipantCode())
+                && same(values[11], customer.getChipsUID())
+                && same(values[12], customer.getSortCode())
+                && same(values[13], customer.getBankleitzhalCode());
+        }
+
+        private static boolean same(String snapshot, String current) {
+            return snapshot == null? current == null : snapshot.equals(current);
+        }
+    }
+
+    /**
+     * Equivalent to C24.validateFully(file), re-validating only Customers which are new or differ from
+     * their snapshot. Never returns null; a valid file gives an empty array.
+     */
+    public ValidationEvent[] validateFully(CustomersFile file) {
+
+        Customer[] customers = file.getCustomer();
+        revalidated = 0;
+
+        if(customers.length == 0) {
+            // Reports any failures on the (empty) CustomersFile itself
+            snapshots.clear();
+            ValidationEvent[] failures = C24.validateFully(file);
+            return failures != null? failures : new ValidationEvent[0];
+        }
+
+        // Customers no longer in the file are dropped
+        Map<Customer, Snapshot> current = new IdentityHashMap<Customer, Snapshot>(customers.length * 2);
+        List<ValidationEvent> events = new ArrayList<ValidationEvent>();
+
+        for(Customer customer : customers) {
+            Snapshot snapshot = current.get(customer);
+            if(snapshot == null) {
+                Address address = customer.getAddress();
+                snapshot = snapshots.get(customer);
+                if(snapshot == null || !snapshot.matches(customer, address)) {
+                    ValidationEvent[] failures = C24.validateFully(customer);
+                    snapshot = new Snapshot(customer, address, failures != null? failures : new ValidationEvent[0]);
+                    revalidated++;
+                }
+                current.put(customer, snapshot);
+            }
+            events.addAll(Arrays.asList(snapshot.events));
+        }
+
+        snapshots = current;
+        return events.toArray(new ValidationEvent[events.size()]);
+    }
+
+    /**
+     * Forces customer to be re-validated on the next call, e.g. after changing it through the generic
+     * ComplexDataObject API rather than its setters
+     */
+    public void invalidate(Customer customer) {
+        snapshots.remove(customer);
+    }
+
+    public void clear() {
+        snapshots.clear();
+    }
+
+    /**
+     * Number of Customers actually validated by the last call
+     */
+    public int getRevalidated() {
+        return revalidated;
+    }
+
+}
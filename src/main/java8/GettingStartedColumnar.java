@@ -0,0 +1,81 @@
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import biz.c24.io.api.C24;
+import biz.c24.io.api.data.ValidationException;
+import biz.c24.io.gettingstarted.purchaseorder.CurrencyCodeJavaEnum;
+import biz.c24.io.gettingstarted.purchaseorder.PurchaseorderDocumentRoot;
+import biz.c24.io.gettingstarted.purchaseorder.PurchaseorderLocal;
+import columnar.PurchaseOrderAggregates;
+import columnar.PurchaseOrderAggregates.DateField;
+import columnar.PurchaseOrderAggregates.ShippingTotals;
+import columnar.PurchaseOrderColumns;
+import utils.PurchaseOrderGenerator;
+
+/**
+ * Shows how to report over many purchase orders at once.
+ * It is expected that you are already familiar with WorkingWithJava8Extensions
+ *
+ * Streaming over each order's List<Lineitem> is convenient, but every value goes through a getter and
+ * often a box. For large reports it's quicker to pull the numbers out into primitive arrays once and
+ * then aggregate over those in parallel.
+ *
+ * Note. execute the mvn profile to generate the classes used in this example. e.g. mvn clean install -Pjava8
+ *
+ */
+public class GettingStartedColumnar {
+
+    public static void main(String[] args) throws IOException, ValidationException {
+
+        int count = args.length > 0? Integer.parseInt(args[0]) : 10000;
+
+        //Generate and parse a year's worth of orders
+        List<PurchaseorderLocal> orders = new ArrayList<>(count);
+        for(int order = 0; order < count; order++) {
+            StringWriter xml = new StringWriter();
+            PurchaseOrderGenerator.write(xml, order, 10);
+            PurchaseorderLocal purchaseOrder = C24.parse(PurchaseorderDocumentRoot.class).from(xml.toString()).getPurchaseorder();
+            C24.validate(purchaseOrder);
+            orders.add(purchaseOrder);
+        }
+
+        //Extract the columns once; the same works on a List of Preons with PurchaseOrderColumns.ofPreons
+        PurchaseOrderColumns columns = PurchaseOrderColumns.of(orders);
+        System.out.println("Extracted " + columns.getOrderCount() + " orders with " + columns.getItemCount() + " line items");
+
+        //Totals are indexed by currency ordinal
+        double[] totals = PurchaseOrderAggregates.totalsByCurrency(columns);
+        for(CurrencyCodeJavaEnum currency : CurrencyCodeJavaEnum.values()) {
+            System.out.println("Invoice Total (" + currency.getValue() + "): " + String.format("%.2f", totals[currency.ordinal()]));
+        }
+        System.out.println();
+
+        //Shipping weight and cost per shipper; orders collected by the customer have no shipper and aren't included
+        long collected = Arrays.stream(columns.getShipper()).filter(shipper -> shipper == PurchaseOrderColumns.NO_SHIPPER).count();
+        System.out.println(collected + " orders have no shipper");
+        ShippingTotals shipping = PurchaseOrderAggregates.shippingByShipper(columns);
+        for(int i = 0; i < shipping.getShippers().length; i++) {
+            System.out.println(shipping.getShippers()[i] + ": " + String.format("%.1f", shipping.getOunces()[i]) + "oz, cost " + String.format("%.2f", shipping.getCost()[i]));
+        }
+        System.out.println();
+
+        //And monthly revenue by the date each order was placed
+        for(Map.Entry<YearMonth, double[]> month : PurchaseOrderAggregates.totalsByMonth(columns, DateField.PURCHASE).entrySet()) {
+            System.out.println(month.getKey() + ": " + String.format("%.2f", month.getValue()[CurrencyCodeJavaEnum.GBP.ordinal()]) + " GBP");
+        }
+        System.out.println();
+
+        //The result matches the stream code from WorkingWithJava8Extensions, to within the rounding of the order the values are summed in
+        double streamTotal = orders.stream()
+            .flatMap(order -> order.getLineitems().stream())
+            .filter(item -> item.getCurrencyEnum() == CurrencyCodeJavaEnum.GBP)
+            .mapToDouble(item -> item.getPrice() * item.getQuantity()).sum();
+        System.out.println("Streamed GBP total: " + String.format("%.2f", streamTotal) + ", columnar: " + String.format("%.2f", totals[CurrencyCodeJavaEnum.GBP.ordinal()]));
+    }
+
+}
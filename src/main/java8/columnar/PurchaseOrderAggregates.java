@@ -0,0 +1,244 @@
+package columnar;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.BinaryOperator;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+import biz.c24.io.gettingstarted.purchaseorder.CurrencyCodeJavaEnum;
+
+/**
+ * Parallel aggregations over PurchaseOrderColumns.
+ *
+ * Each kernel splits the orders into a few chunks per core, runs a tight loop over the primitive arrays
+ * for each chunk on the common ForkJoinPool and then adds the partial results together. Line item values
+ * are price * quantity, exactly as in WorkingWithJava8Extensions; being summed in a different order, the
+ * totals may differ from a sequential sum in the last few bits.
+ *
+ */
+public final class PurchaseOrderAggregates {
+
+    private static final int CURRENCIES = PurchaseOrderColumns.CURRENCIES.length;
+
+    /**
+     * Bucketing uses a dense row for every key between the first and last up to this many keys, or up to
+     * the number of orders in a chunk if that's more; beyond it, only the keys actually present
+     */
+    private static final int DENSE_KEYS = 4096;
+
+    /**
+     * Which of an order's dates to bucket by
+     */
+    public enum DateField {
+        PURCHASE, SHIPPING
+    }
+
+    /**
+     * Shipping weight and cost for each shipper, indexed as PurchaseOrderColumns.getShipperNames()
+     */
+    public static final class ShippingTotals {
+
+        private final String[] shippers;
+        private final double[] ounces;
+        private final double[] cost;
+
+        ShippingTotals(String[] shippers, double[] ounces, double[] cost) {
+            this.shippers = shippers;
+            this.ounces = ounces;
+            this.cost = cost;
+        }
+
+        public String[] getShippers() {
+            return shippers;
+        }
+
+        public double[] getOunces() {
+            return ounces;
+        }
+
+        public double[] getCost() {
+            return cost;
+        }
+    }
+
+    private PurchaseOrderAggregates() {
+    }
+
+    /**
+     * Invoice totals, indexed by CurrencyCodeJavaEnum ordinal
+     */
+    public static double[] totalsByCurrency(PurchaseOrderColumns columns) {
+
+        double[] price = columns.getPrice();
+        int[] quantity = columns.getQuantity();
+        byte[] currency = columns.getCurrency();
+
+        return inParallel(columns.getItemCount(), (from, to) -> {
+            double[] totals = new double[CURRENCIES];
+            for(int i = from; i < to; i++) {
+                totals[currency[i]] += price[i] * quantity[i];
+            }
+            return totals;
+        }, PurchaseOrderAggregates::add);
+    }
+
+    public static double totalFor(PurchaseOrderColumns columns, CurrencyCodeJavaEnum currency) {
+        return totalsByCurrency(columns)[currency.ordinal()];
+    }
+
+    /**
+     * Total weight shipped and its cost at each shipper's per-ounce rate. Orders without a shipper aren't counted.
+     */
+    public static ShippingTotals shippingByShipper(PurchaseOrderColumns columns) {
+
+        int[] firstItem = columns.getFirstItem();
+        int[] shipper = columns.getShipper();
+        double[] rate = columns.getPerOunceRate();
+        int[] quantity = columns.getQuantity();
+        int[] perUnitOunces = columns.getPerUnitOunces();
+        int shippers = columns.getShipperNames().length;
+
+        // Ounces then cost for each shipper
+        double[] totals = inParallel(columns.getOrderCount(), (from, to) -> {
+            double[] partial = new double[shippers * 2];
+            for(int order = from; order < to; order++) {
+                if(shipper[order] == PurchaseOrderColumns.NO_SHIPPER) {
+                    continue;
+                }
+                long weight = 0;
+                for(int i = firstItem[order], end = firstItem[order + 1]; i < end; i++) {
+                    weight += (long) quantity[i] * perUnitOunces[i];
+                }
+                double ounces = (double) weight / PurchaseOrderColumns.OUNCE_SCALE;
+                partial[shipper[order] * 2] += ounces;
+                partial[shipper[order] * 2 + 1] += ounces * rate[order];
+            }
+            return partial;
+        }, PurchaseOrderAggregates::add);
+
+        double[] ounces = new double[shippers];
+        double[] cost = new double[shippers];
+        for(int i = 0; i < shippers; i++) {
+            ounces[i] = totals[i * 2];
+            cost[i] = totals[i * 2 + 1];
+        }
+        return new ShippingTotals(columns.getShipperNames(), ounces, cost);
+    }
+
+    /**
+     * Invoice totals for each day with orders, indexed by CurrencyCodeJavaEnum ordinal
+     */
+    public static SortedMap<LocalDate, double[]> totalsByDay(PurchaseOrderColumns columns, DateField field) {
+        int[] day = field == DateField.PURCHASE? columns.getPurchaseDay() : columns.getShippingDay();
+        return bucket(columns, day, key -> LocalDate.ofEpochDay(key));
+    }
+
+    /**
+     * Invoice totals for each month with orders, indexed by CurrencyCodeJavaEnum ordinal
+     */
+    public static SortedMap<YearMonth, double[]> totalsByMonth(PurchaseOrderColumns columns, DateField field) {
+        int[] month = field == DateField.PURCHASE? columns.getPurchaseMonth() : columns.getShippingMonth();
+        return bucket(columns, month, key -> YearMonth.of(Math.floorDiv(key, 12), Math.floorMod(key, 12) + 1));
+    }
+
+    private static <K> SortedMap<K, double[]> bucket(PurchaseOrderColumns columns, int[] keys, IntFunction<K> toKey) {
+
+        SortedMap<K, double[]> buckets = new TreeMap<>();
+        int orders = columns.getOrderCount();
+        if(orders == 0) {
+            return buckets;
+        }
+
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for(int i = 0; i < orders; i++) {
+            min = Math.min(min, keys[i]);
+            max = Math.max(max, keys[i]);
+        }
+        int base = min;
+        // As a long, since the keys may span more than Integer.MAX_VALUE
+        long range = (long) max - min + 1;
+
+        int[] firstItem = columns.getFirstItem();
+        double[] price = columns.getPrice();
+        int[] quantity = columns.getQuantity();
+        byte[] currency = columns.getCurrency();
+
+        if(range > Math.max(DENSE_KEYS, orders / chunks(orders))) {
+            // A few outlying dates would make a dense row per key far bigger than the orders themselves, so
+            // each chunk keeps a row only for the keys it sees
+            Map<Integer, double[]> totals = inParallel(orders, (from, to) -> {
+                Map<Integer, double[]> partial = new HashMap<>();
+                for(int order = from; order < to; order++) {
+                    double[] row = partial.computeIfAbsent(keys[order], key -> new double[CURRENCIES]);
+                    for(int i = firstItem[order], end = firstItem[order + 1]; i < end; i++) {
+                        row[currency[i]] += price[i] * quantity[i];
+                    }
+                }
+                return partial;
+            }, (first, second) -> {
+                second.forEach((key, row) -> first.merge(key, row, PurchaseOrderAggregates::add));
+                return first;
+            });
+
+            totals.forEach((key, row) -> buckets.put(toKey.apply(key), row));
+            return buckets;
+        }
+
+        int rows = (int) range;
+
+        // One row of currency totals for every key between min and max
+        double[] totals = inParallel(orders, (from, to) -> {
+            double[] partial = new double[rows * CURRENCIES];
+            for(int order = from; order < to; order++) {
+                int row = (keys[order] - base) * CURRENCIES;
+                for(int i = firstItem[order], end = firstItem[order + 1]; i < end; i++) {
+                    partial[row + currency[i]] += price[i] * quantity[i];
+                }
+            }
+            return partial;
+        }, PurchaseOrderAggregates::add);
+
+        boolean[] used = new boolean[rows];
+        for(int i = 0; i < orders; i++) {
+            used[keys[i] - base] = true;
+        }
+        for(int key = 0; key < rows; key++) {
+            if(used[key]) {
+                double[] row = new double[CURRENCIES];
+                System.arraycopy(totals, key * CURRENCIES, row, 0, CURRENCIES);
+                buckets.put(toKey.apply(base + key), row);
+            }
+        }
+        return buckets;
+    }
+
+    private interface Kernel<T> {
+        T run(int from, int to);
+    }
+
+    private static int chunks(int size) {
+        return Math.max(1, Math.min(size / 4096, Runtime.getRuntime().availableProcessors() * 4));
+    }
+
+    private static <T> T inParallel(int size, Kernel<T> kernel, BinaryOperator<T> combine) {
+        int chunks = chunks(size);
+        return IntStream.range(0, chunks).parallel()
+            .mapToObj(chunk -> kernel.run((int) ((long) size * chunk / chunks), (int) ((long) size * (chunk + 1) / chunks)))
+            .reduce(combine)
+            .get();
+    }
+
+    private static double[] add(double[] first, double[] second) {
+        for(int i = 0; i < first.length; i++) {
+            first[i] += second[i];
+        }
+        return first;
+    }
+
+}
@@ -0,0 +1,297 @@
+package columnar;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.stream.IntStream;
+
+import biz.c24.io.gettingstarted.purchaseorder.CurrencyCodeJavaEnum;
+import biz.c24.io.gettingstarted.purchaseorder.Lineitem;
+import biz.c24.io.gettingstarted.purchaseorder.PurchaseorderLocal;
+import biz.c24.io.gettingstarted.purchaseorder.Shipper;
+
+/**
+ * The numbers from many purchase orders, held as primitive arrays.
+ *
+ * Order-level values (shipper, per-ounce rate and dates) are indexed by order; line item values by line
+ * item, with the line items of order n running from getFirstItem()[n] to getFirstItem()[n + 1]. Currencies
+ * are CurrencyCodeJavaEnum ordinals, shippers are indexes into getShipperNames() and dates are epoch days
+ * and months (year * 12 + month - 1), the purchase date being taken in its own time zone. Shipper is
+ * optional; an order without one has NO_SHIPPER and a per-ounce rate of zero.
+ *
+ * Per-unit ounces are decimals in the model, so they are held exactly as thousandths of an ounce.
+ *
+ * The arrays are returned as-is rather than copied; don't modify them.
+ *
+ */
+public final class PurchaseOrderColumns {
+
+    public static final int OUNCE_SCALE = 1000;
+
+    public static final int NO_SHIPPER = -1;
+
+    static final CurrencyCodeJavaEnum[] CURRENCIES = CurrencyCodeJavaEnum.values();
+
+    private final int orders;
+    private final int[] firstItem;
+    private final int[] shipper;
+    private final double[] perOunceRate;
+    private final int[] purchaseDay;
+    private final int[] purchaseMonth;
+    private final int[] shippingDay;
+    private final int[] shippingMonth;
+    private final String[] shipperNames;
+
+    private final int items;
+    private final double[] price;
+    private final int[] quantity;
+    private final int[] perUnitOunces;
+    private final byte[] currency;
+
+    private PurchaseOrderColumns(Builder builder) {
+        orders = builder.orders;
+        firstItem = Arrays.copyOf(builder.firstItem, orders + 1);
+        shipper = Arrays.copyOf(builder.shipper, orders);
+        perOunceRate = Arrays.copyOf(builder.perOunceRate, orders);
+        purchaseDay = Arrays.copyOf(builder.purchaseDay, orders);
+        purchaseMonth = Arrays.copyOf(builder.purchaseMonth, orders);
+        shippingDay = Arrays.copyOf(builder.shippingDay, orders);
+        shippingMonth = Arrays.copyOf(builder.shippingMonth, orders);
+        shipperNames = builder.shipperNames.toArray(new String[0]);
+
+        items = builder.items;
+        price = Arrays.copyOf(builder.price, items);
+        quantity = Arrays.copyOf(builder.quantity, items);
+        perUnitOunces = Arrays.copyOf(builder.perUnitOunces, items);
+        currency = Arrays.copyOf(builder.currency, items);
+    }
+
+    /**
+     * Extracts the columns from many CDOs, in parallel
+     */
+    public static PurchaseOrderColumns of(List<PurchaseorderLocal> orders) {
+        return extract(orders, Builder::add);
+    }
+
+    /**
+     * Extracts the columns from many Preons, in parallel
+     */
+    public static PurchaseOrderColumns ofPreons(List<biz.c24.io.gettingstarted.purchaseorder.preon.PurchaseorderLocal> orders) {
+        return extract(orders, Builder::add);
+    }
+
+    private static <T> PurchaseOrderColumns extract(List<T> orders, BiConsumer<Builder, T> add) {
+        int chunks = Math.max(1, Math.min(orders.size() / 64, Runtime.getRuntime().availableProcessors() * 4));
+        return IntStream.range(0, chunks).parallel()
+            .mapToObj(chunk -> {
+                Builder builder = new Builder();
+                int from = (int) ((long) orders.size() * chunk / chunks);
+                int to = (int) ((long) orders.size() * (chunk + 1) / chunks);
+                for(T order : orders.subList(from, to)) {
+                    add.accept(builder, order);
+                }
+                return builder;
+            })
+            .reduce((first, second) -> first.addAll(second))
+            .get()
+            .build();
+    }
+
+    public int getOrderCount() {
+        return orders;
+    }
+
+    public int getItemCount() {
+        return items;
+    }
+
+    public int[] getFirstItem() {
+        return firstItem;
+    }
+
+    public int[] getShipper() {
+        return shipper;
+    }
+
+    public String[] getShipperNames() {
+        return shipperNames;
+    }
+
+    public double[] getPerOunceRate() {
+        return perOunceRate;
+    }
+
+    public int[] getPurchaseDay() {
+        return purchaseDay;
+    }
+
+    public int[] getPurchaseMonth() {
+        return purchaseMonth;
+    }
+
+    public int[] getShippingDay() {
+        return shippingDay;
+    }
+
+    public int[] getShippingMonth() {
+        return shippingMonth;
+    }
+
+    public double[] getPrice() {
+        return price;
+    }
+
+    public int[] getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Per-unit weights in thousandths of an ounce
+     */
+    public int[] getPerUnitOunces() {
+        return perUnitOunces;
+    }
+
+    public byte[] getCurrency() {
+        return currency;
+    }
+
+    /**
+     * Accumulates purchase orders into columns. Not thread-safe; use one per thread and combine them with addAll().
+     */
+    public static final class Builder {
+
+        private int orders;
+        private int[] firstItem = new int[65];
+        private int[] shipper = new int[64];
+        private double[] perOunceRate = new double[64];
+        private int[] purchaseDay = new int[64];
+        private int[] purchaseMonth = new int[64];
+        private int[] shippingDay = new int[64];
+        private int[] shippingMonth = new int[64];
+        private final Map<String, Integer> shipperIds = new HashMap<>();
+        private final List<String> shipperNames = new ArrayList<>();
+
+        private int items;
+        private double[] price = new double[256];
+        private int[] quantity = new int[256];
+        private int[] perUnitOunces = new int[256];
+        private byte[] currency = new byte[256];
+
+        public Builder add(PurchaseorderLocal order) {
+            Shipper shipper = order.getShipper();
+            order(shipper == null? null : shipper.getNameElement(), shipper == null? null : shipper.getPerouncerate(),
+                  order.getPurchasedate(), order.getShippingdate());
+            for(Lineitem item : order.getLineitems()) {
+                item(item.getPrice(), item.getQuantity(), item.getPerunitounces(), item.getCurrency());
+            }
+            return this;
+        }
+
+        public Builder add(biz.c24.io.gettingstarted.purchaseorder.preon.PurchaseorderLocal order) {
+            biz.c24.io.gettingstarted.purchaseorder.preon.Shipper shipper = order.getShipper();
+            order(shipper == null? null : shipper.getNameElement(), shipper == null? null : shipper.getPerouncerate(),
+                  order.getPurchasedate(), order.getShippingdate());
+            for(biz.c24.io.gettingstarted.purchaseorder.preon.Lineitem item : order.getLineitems()) {
+                item(item.getPrice(), item.getQuantity(), item.getPerunitounces(), item.getCurrency());
+            }
+            return this;
+        }
+
+        /**
+         * Appends all of other's orders to this Builder
+         */
+        public Builder addAll(Builder other) {
+            int[] remap = new int[other.shipperNames.size()];
+            for(int i = 0; i < remap.length; i++) {
+                remap[i] = shipperId(other.shipperNames.get(i));
+            }
+            ensureOrders(orders + other.orders);
+            ensureItems(items + other.items);
+            for(int i = 0; i < other.orders; i++) {
+                shipper[orders + i] = other.shipper[i] == NO_SHIPPER? NO_SHIPPER : remap[other.shipper[i]];
+                firstItem[orders + i + 1] = items + other.firstItem[i + 1];
+            }
+            System.arraycopy(other.perOunceRate, 0, perOunceRate, orders, other.orders);
+            System.arraycopy(other.purchaseDay, 0, purchaseDay, orders, other.orders);
+            System.arraycopy(other.purchaseMonth, 0, purchaseMonth, orders, other.orders);
+            System.arraycopy(other.shippingDay, 0, shippingDay, orders, other.orders);
+            System.arraycopy(other.shippingMonth, 0, shippingMonth, orders, other.orders);
+            System.arraycopy(other.price, 0, price, items, other.items);
+            System.arraycopy(other.quantity, 0, quantity, items, other.items);
+            System.arraycopy(other.perUnitOunces, 0, perUnitOunces, items, other.items);
+            System.arraycopy(other.currency, 0, currency, items, other.items);
+            orders += other.orders;
+            items += other.items;
+            return this;
+        }
+
+        public PurchaseOrderColumns build() {
+            return new PurchaseOrderColumns(this);
+        }
+
+        private void order(String shipperName, BigDecimal rate, ZonedDateTime purchaseDate, LocalDate shippingDate) {
+            ensureOrders(orders + 1);
+            LocalDate purchased = purchaseDate.toLocalDate();
+            shipper[orders] = shipperName == null? NO_SHIPPER : shipperId(shipperName);
+            perOunceRate[orders] = rate == null? 0 : rate.doubleValue();
+            purchaseDay[orders] = (int) purchased.toEpochDay();
+            purchaseMonth[orders] = purchased.getYear() * 12 + purchased.getMonthValue() - 1;
+            shippingDay[orders] = (int) shippingDate.toEpochDay();
+            shippingMonth[orders] = shippingDate.getYear() * 12 + shippingDate.getMonthValue() - 1;
+            orders++;
+            firstItem[orders] = items;
+        }
+
+        private void item(double itemPrice, int itemQuantity, BigDecimal ounces, String itemCurrency) {
+            ensureItems(items + 1);
+            price[items] = itemPrice;
+            quantity[items] = itemQuantity;
+            // Throws rather than silently truncating a weight finer than we can hold
+            perUnitOunces[items] = ounces.movePointRight(3).intValueExact();
+            currency[items] = (byte) CurrencyCodeJavaEnum.valueOf(itemCurrency).ordinal();
+            items++;
+            firstItem[orders] = items;
+        }
+
+        private int shipperId(String name) {
+            Integer id = shipperIds.get(name);
+            if(id == null) {
+                id = shipperNames.size();
+                shipperIds.put(name, id);
+                shipperNames.add(name);
+            }
+            return id;
+        }
+
+        private void ensureOrders(int capacity) {
+            if(capacity > shipper.length) {
+                int length = Math.max(capacity, shipper.length * 2);
+                firstItem = Arrays.copyOf(firstItem, length + 1);
+                shipper = Arrays.copyOf(shipper, length);
+                perOunceRate = Arrays.copyOf(perOunceRate, length);
+                purchaseDay = Arrays.copyOf(purchaseDay, length);
+                purchaseMonth = Arrays.copyOf(purchaseMonth, length);
+                shippingDay = Arrays.copyOf(shippingDay, length);
+                shippingMonth = Arrays.copyOf(shippingMonth, length);
+            }
+        }
+
+        private void ensureItems(int capacity) {
+            if(capacity > price.length) {
+                int length = Math.max(capacity, price.length * 2);
+                price = Arrays.copyOf(price, length);
+                quantity = Arrays.copyOf(quantity, length);
+                perUnitOunces = Arrays.copyOf(perUnitOunces, length);
+                currency = Arrays.copyOf(currency, length);
+            }
+        }
+    }
+
+}
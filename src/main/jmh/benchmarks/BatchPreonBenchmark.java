@@ -0,0 +1,89 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import arena.BatchPreonConverter;
+import arena.PreonBatch;
+import biz.c24.io.gettingstarted.customer.Customer;
+
+/**
+ * Converting every Customer in a file to a Preon, one toPreon() at a time and as a batch written into
+ * pooled arenas, on one thread and on one per core.
+ *
+ * The default -prof gc shows the difference in allocation per operation and in GC count and time; the
+ * gap widens with the number of records, so include larger files, e.g. -p records=100000,1000000.
+ * GettingStartedBatchPreons reports the heap each approach retains.
+ *
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BatchPreonBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Converters {
+
+        final BatchPreonConverter<Customer, biz.c24.io.gettingstarted.customer.preon.Customer> parallel =
+            new BatchPreonConverter<Customer, biz.c24.io.gettingstarted.customer.preon.Customer>(BatchPreonConverter.CUSTOMER);
+
+        final BatchPreonConverter<Customer, biz.c24.io.gettingstarted.customer.preon.Customer> singleThreaded =
+            new BatchPreonConverter<Customer, biz.c24.io.gettingstarted.customer.preon.Customer>(BatchPreonConverter.CUSTOMER, 1, 1024 * 1024);
+
+        Customer[] customers;
+
+        @Setup(Level.Trial)
+        public void setUp(CustomersState state) {
+            customers = state.cdo.getCustomer();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            parallel.shutdown();
+            singleThreaded.shutdown();
+        }
+    }
+
+    @Benchmark
+    public biz.c24.io.gettingstarted.customer.preon.Customer[] perObject(Converters converters) throws IOException {
+        Customer[] customers = converters.customers;
+        biz.c24.io.gettingstarted.customer.preon.Customer[] preons = new biz.c24.io.gettingstarted.customer.preon.Customer[customers.length];
+        for(int i = 0; i < customers.length; i++) {
+            preons[i] = customers[i].toPreon();
+        }
+        return preons;
+    }
+
+    @Benchmark
+    public long batchSingleThreaded(Converters converters) throws IOException {
+        return convert(converters.singleThreaded, converters.customers);
+    }
+
+    @Benchmark
+    public long batchParallel(Converters converters) throws IOException {
+        return convert(converters.parallel, converters.customers);
+    }
+
+    /**
+     * Converts and releases a batch, as a cache replacing its contents would
+     */
+    private static long convert(BatchPreonConverter<Customer, biz.c24.io.gettingstarted.customer.preon.Customer> converter,
+                                Customer[] customers) throws IOException {
+        PreonBatch<biz.c24.io.gettingstarted.customer.preon.Customer> batch = converter.convert(customers);
+        try {
+            return batch.getBytes();
+        } finally {
+            batch.release();
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import pipeline.CompiledParser;
+import pipeline.CompiledPipeline;
+import pipeline.CompiledWriter;
+import utils.CustomersFileGenerator;
+import utils.NullOutputStream;
+import biz.c24.io.api.C24;
+import biz.c24.io.api.data.ValidationException;
+import static biz.c24.io.api.C24.Format.*;
+import biz.c24.io.gettingstarted.contact.ContactDetailsFile;
+import biz.c24.io.gettingstarted.customer.CustomersFile;
+import biz.c24.io.gettingstarted.customer.CustomersFileElement;
+import biz.c24.io.gettingstarted.transform.GenerateContactListTransform;
+
+/**
+ * Small messages through parse, validate, transform and write, comparing the fluent API, which builds
+ * everything afresh for each message, with shared CompiledPipelines.
+ *
+ * Run with -prof gc: gc.alloc.rate.norm for the compiled variants should be little more than
+ * compiledParse's, which is essentially the CDO, while the fluent variants add builders, Sources, Sinks
+ * and buffers for every message.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(Threads.MAX)
+public class CompiledPipelineBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Messages {
+
+        @Param({"1", "10"})
+        public int records;
+
+        byte[] message;
+
+        final CompiledParser<CustomersFile> parser = CompiledParser.parse(CustomersFile.class, CustomersFileElement.getInstance()).as(XML);
+
+        final CompiledPipeline<CustomersFile, CustomersFile> validateToJson =
+            CompiledPipeline.from(parser)
+                            .validate()
+                            .write(CompiledWriter.write().as(JSON));
+
+        final CompiledPipeline<CustomersFile, ContactDetailsFile> transformToJson =
+            validateToJson.transform(GenerateContactListTransform.class, ContactDetailsFile.class)
+                          .write(CompiledWriter.write().as(JSON));
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            StringWriter writer = new StringWriter();
+            CustomersFileGenerator.write(writer, records);
+            message = writer.toString().getBytes("UTF-8");
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Fluent {
+        final NullOutputStream out = new NullOutputStream();
+        final GenerateContactListTransform xform = new GenerateContactListTransform();
+    }
+
+    @Benchmark
+    public CustomersFile fluentParse(Messages messages) throws IOException {
+        return C24.parse(CustomersFile.class).as(XML).from(new ByteArrayInputStream(messages.message));
+    }
+
+    @Benchmark
+    public CustomersFile compiledParse(Messages messages) throws IOException {
+        return messages.parser.from(messages.message);
+    }
+
+    @Benchmark
+    public NullOutputStream fluentValidateToJson(Messages messages, Fluent fluent) throws IOException, ValidationException {
+        CustomersFile file = C24.parse(CustomersFile.class).as(XML).from(new ByteArrayInputStream(messages.message));
+        C24.write(C24.validate(file)).as(JSON).to(fluent.out);
+        return fluent.out;
+    }
+
+    @Benchmark
+    public NullOutputStream compiledValidateToJson(Messages messages, Fluent fluent) throws IOException, ValidationException {
+        messages.validateToJson.process(messages.message, 0, messages.message.length, fluent.out);
+        return fluent.out;
+    }
+
+    @Benchmark
+    public NullOutputStream fluentTransformToJson(Messages messages, Fluent fluent) throws IOException, ValidationException {
+        CustomersFile file = C24.parse(CustomersFile.class).as(XML).from(new ByteArrayInputStream(messages.message));
+        C24.write(fluent.xform.transform(C24.validate(file))).as(JSON).to(fluent.out);
+        return fluent.out;
+    }
+
+    @Benchmark
+    public NullOutputStream compiledTransformToJson(Messages messages, Fluent fluent) throws IOException, ValidationException {
+        messages.transformToJson.process(messages.message, 0, messages.message.length, fluent.out);
+        return fluent.out;
+    }
+
+}
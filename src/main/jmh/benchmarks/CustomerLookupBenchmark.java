@@ -0,0 +1,92 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import index.PreonKeyIndex;
+import utils.CustomersFileGenerator;
+import biz.c24.io.api.C24;
+import biz.c24.io.gettingstarted.customer.Customer;
+import biz.c24.io.gettingstarted.customer.CustomersFile;
+
+/**
+ * Compares finding a Customer by CustomerNumber with a PreonKeyIndex against scanning the Preon
+ * and against a HashMap over the CDOs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class CustomerLookupBenchmark {
+
+    @Param({"1000", "100000"})
+    public int customers;
+
+    private biz.c24.io.gettingstarted.customer.preon.CustomersFile preonFile;
+    private PreonKeyIndex index;
+    private Map<String, Customer> cdoMap;
+    private String[] keys;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        File file = CustomersFileGenerator.generate(customers);
+        CustomersFile cdoFile = C24.parse(CustomersFile.class).from(file);
+
+        preonFile = cdoFile.toPreon();
+        index = PreonKeyIndex.build(preonFile, PreonKeyIndex.CUSTOMER_NUMBER);
+
+        cdoMap = new HashMap<String, Customer>();
+        for(Customer customer : cdoFile.getCustomer()) {
+            cdoMap.put(customer.getCustomerNumber(), customer);
+        }
+
+        Random random = new Random(42);
+        Customer[] all = cdoFile.getCustomer();
+        keys = new String[1024];
+        for(int i = 0; i < keys.length; i++) {
+            keys[i] = all[random.nextInt(all.length)].getCustomerNumber();
+        }
+    }
+
+    private String nextKey() {
+        return keys[next++ & (keys.length - 1)];
+    }
+
+    @Benchmark
+    public biz.c24.io.gettingstarted.customer.preon.Customer preonIndex() {
+        return index.get(nextKey());
+    }
+
+    @Benchmark
+    public biz.c24.io.gettingstarted.customer.preon.Customer preonLinearScan() {
+        String key = nextKey();
+        // getCustomer(i) walks the file from the start each time, so iterate the List in one pass instead
+        for(biz.c24.io.gettingstarted.customer.preon.Customer customer : preonFile.getCustomer()) {
+            if(key.equals(customer.getCustomerNumber())) {
+                return customer;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Customer cdoHashMap() {
+        return cdoMap.get(nextKey());
+    }
+
+}
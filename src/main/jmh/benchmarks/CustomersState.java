@@ -0,0 +1,54 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import utils.CustomersFileGenerator;
+import biz.c24.io.api.C24;
+import biz.c24.io.api.data.ValidationException;
+import static biz.c24.io.api.C24.Format.*;
+import biz.c24.io.gettingstarted.customer.CustomersFile;
+
+/**
+ * A generated Customers file, in XML and JSON, plus its parsed CDO and Preon.
+ *
+ * Override the sizes with e.g. -p records=10000000
+ */
+@State(Scope.Benchmark)
+public class CustomersState {
+
+    @Param({"10", "1000", "100000"})
+    public int records;
+
+    public File xml;
+    public File json;
+    public CustomersFile cdo;
+    public biz.c24.io.gettingstarted.customer.preon.CustomersFile preon;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, ValidationException {
+
+        xml = CustomersFileGenerator.generate(records);
+        cdo = C24.parse(CustomersFile.class).from(xml);
+        C24.validate(cdo);
+        preon = cdo.toPreon();
+
+        json = File.createTempFile("Customers-" + records + "-", ".json");
+        json.deleteOnExit();
+        OutputStream out = new FileOutputStream(json);
+        try {
+            C24.write(cdo).as(JSON).to(out);
+        } finally {
+            out.close();
+        }
+    }
+
+}
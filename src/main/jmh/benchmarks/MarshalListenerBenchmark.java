@@ -0,0 +1,107 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import rewrite.RewriteRules;
+import utils.NullOutputStream;
+import biz.c24.io.api.C24;
+import static biz.c24.io.api.C24.Format.*;
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.presentation.MarshalListener;
+import biz.c24.io.api.presentation.StreamingSink;
+import biz.c24.io.gettingstarted.customer.Customer;
+import biz.c24.io.gettingstarted.customer.CustomerDataType;
+
+/**
+ * Marshaling Customers to XML through the hand-written regex MarshalListener from GettingStartedCDO and
+ * through the equivalent compiled RewriteRules. Both leave the source untouched, the hand-written one by
+ * marshaling a deep clone of each Customer it changes, as GettingStartedCDO suggests.
+ *
+ * Every generated telephone number starts with +44, so every Customer is rewritten.
+ *
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MarshalListenerBenchmark {
+
+    @State(Scope.Thread)
+    public static class Listeners {
+
+        final MarshalListener regex = new MarshalListener() {
+
+            @Override
+            public boolean marshal(ComplexDataObject value, StreamingSink sink) throws Exception {
+                if(value instanceof Customer) {
+                    Customer customer = (Customer) value;
+                    String telephoneNumber = customer.getTelephoneNumber();
+
+                    if(telephoneNumber.startsWith("+44")) {
+                        customer = (Customer) customer.cloneDeep();
+                        customer.setTelephoneNumber(telephoneNumber.replaceFirst("\\+44[ ]*", "0"));
+                    }
+
+                    sink.marshal(customer);
+                    return true;
+                } else {
+                    return false;
+                }
+            }
+        };
+
+        MarshalListener compiled;
+        MarshalListener compiledAllRules;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            ((CustomerDataType) CustomerDataType.getInstance()).setProcessAsBatch(true);
+
+            RewriteRules telephone = RewriteRules.forType(CustomerDataType.getInstance())
+                                                 .replacePrefix("Telephone Number", "+44", "0");
+            compiled = telephone.newListener();
+            compiledAllRules = telephone.normalise("Customer Acronym")
+                                        .maskEmail("Email Address")
+                                        .mask("Fax Number", 4)
+                                        .drop("Telex Number")
+                                        .newListener();
+        }
+    }
+
+    @Benchmark
+    public long noListener(CustomersState state, Listeners listeners) throws IOException {
+        NullOutputStream out = new NullOutputStream();
+        C24.write(state.cdo).as(XML).to(out);
+        return out.getCount();
+    }
+
+    @Benchmark
+    public long regexListener(CustomersState state, Listeners listeners) throws IOException {
+        NullOutputStream out = new NullOutputStream();
+        C24.write(state.cdo).as(XML).with(listeners.regex).to(out);
+        return out.getCount();
+    }
+
+    @Benchmark
+    public long compiledListener(CustomersState state, Listeners listeners) throws IOException {
+        NullOutputStream out = new NullOutputStream();
+        C24.write(state.cdo).as(XML).with(listeners.compiled).to(out);
+        return out.getCount();
+    }
+
+    @Benchmark
+    public long compiledListenerAllRules(CustomersState state, Listeners listeners) throws IOException {
+        NullOutputStream out = new NullOutputStream();
+        C24.write(state.cdo).as(XML).with(listeners.compiledAllRules).to(out);
+        return out.getCount();
+    }
+
+}
@@ -0,0 +1,64 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import metrics.C24Metrics;
+import metrics.InstrumentedC24;
+import metrics.LatencyHistogram;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import biz.c24.io.api.C24;
+import biz.c24.io.api.data.ValidationException;
+import biz.c24.io.gettingstarted.customer.CustomersFile;
+
+/**
+ * The cost of leaving the metrics switched on.
+ *
+ * validate and instrumentedValidate should be indistinguishable at the larger record counts; sample
+ * and contendedSample give the fixed cost per call, uncontended and with every core recording.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MetricsOverheadBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Histogram {
+        final LatencyHistogram histogram = new LatencyHistogram();
+    }
+
+    @Benchmark
+    public CustomersFile validate(CustomersState state) throws ValidationException {
+        return C24.validate(state.cdo);
+    }
+
+    @Benchmark
+    public CustomersFile instrumentedValidate(CustomersState state) throws ValidationException {
+        return InstrumentedC24.validate(state.cdo);
+    }
+
+    @Benchmark
+    public void sample() {
+        C24Metrics.VALIDATE.stop(C24Metrics.VALIDATE.start(), 1);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void contendedSample() {
+        C24Metrics.VALIDATE.stop(C24Metrics.VALIDATE.start(), 1);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void contendedRecord(Histogram state) {
+        state.histogram.record(System.nanoTime() & 0xFFFFF);
+    }
+
+}
@@ -0,0 +1,86 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import utils.NullOutputStream;
+import utils.PurchaseOrderGenerator;
+import biz.c24.io.api.C24;
+import static biz.c24.io.api.C24.Format.*;
+import biz.c24.io.gettingstarted.customer.CustomersFile;
+import biz.c24.io.gettingstarted.purchaseorder.PurchaseorderDocumentRoot;
+
+/**
+ * C24.parse and C24.write in each direction between XML and JSON
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParseBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class PurchaseOrderState {
+
+        @Param({"10", "1000", "100000"})
+        public int lineItems;
+
+        public File xml;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            xml = PurchaseOrderGenerator.generate(lineItems);
+        }
+    }
+
+    @Benchmark
+    public CustomersFile parseXml(CustomersState state) throws IOException {
+        return C24.parse(CustomersFile.class).from(state.xml);
+    }
+
+    @Benchmark
+    public CustomersFile parseJson(CustomersState state) throws IOException {
+        return C24.parse(CustomersFile.class).as(JSON).from(state.json);
+    }
+
+    @Benchmark
+    public biz.c24.io.gettingstarted.customer.preon.CustomersFile parseXmlToPreon(CustomersState state) throws IOException {
+        return C24.parse(biz.c24.io.gettingstarted.customer.preon.CustomersFile.class).from(state.xml);
+    }
+
+    @Benchmark
+    public long writeJson(CustomersState state) throws IOException {
+        NullOutputStream out = new NullOutputStream();
+        C24.write(state.cdo).as(JSON).to(out);
+        return out.getCount();
+    }
+
+    @Benchmark
+    public long writeXml(CustomersState state) throws IOException {
+        NullOutputStream out = new NullOutputStream();
+        C24.write(state.cdo).as(XML).to(out);
+        return out.getCount();
+    }
+
+    @Benchmark
+    public long writePreonJson(CustomersState state) throws IOException {
+        NullOutputStream out = new NullOutputStream();
+        C24.write(state.preon).as(JSON).to(out);
+        return out.getCount();
+    }
+
+    @Benchmark
+    public PurchaseorderDocumentRoot parsePurchaseOrder(PurchaseOrderState state) throws IOException {
+        return C24.parse(PurchaseorderDocumentRoot.class).from(state.xml);
+    }
+
+}
@@ -0,0 +1,92 @@
+package benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import prescreen.CustomerPreScreen;
+import streaming.CustomerStreamer;
+import streaming.RecordHandler;
+import utils.CustomersFileGenerator;
+import utils.NullOutputStream;
+import biz.c24.io.api.C24;
+import static biz.c24.io.api.C24.Format.*;
+import biz.c24.io.api.data.ValidationEvent;
+import biz.c24.io.gettingstarted.customer.Customer;
+
+/**
+ * Parsing and validating every Customer against screening out the invalid ones first, as the proportion
+ * of invalid Customers grows. screen alone gives the cost of the pre-screen itself.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class PreScreenBenchmark {
+
+    @Param({"100000"})
+    public int records;
+
+    @Param({"0", "10", "50", "90"})
+    public int rejectPercent;
+
+    private byte[] xml;
+    private CustomerPreScreen preScreen;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Writer writer = new OutputStreamWriter(bytes, "UTF-8");
+        CustomersFileGenerator.writeWithRejects(writer, records, rejectPercent);
+        writer.close();
+        xml = bytes.toByteArray();
+        preScreen = new CustomerPreScreen();
+    }
+
+    @Benchmark
+    public long parseAndValidate() throws IOException {
+        return validCustomers(new ByteArrayInputStream(xml));
+    }
+
+    @Benchmark
+    public long screenParseAndValidate() throws IOException {
+        return validCustomers(preScreen.screened(new ByteArrayInputStream(xml), XML, null));
+    }
+
+    @Benchmark
+    public long screen() throws IOException {
+        NullOutputStream out = new NullOutputStream();
+        preScreen.screen(new ByteArrayInputStream(xml), XML, out, null);
+        return out.getCount();
+    }
+
+    private static long validCustomers(InputStream in) throws IOException {
+        final long[] valid = new long[1];
+        CustomerStreamer.stream(in, XML, new RecordHandler<Customer>() {
+
+            @Override
+            public void handle(Customer customer) {
+                ValidationEvent[] failures = C24.validateFully(customer);
+                if(failures == null || failures.length == 0) {
+                    valid[0]++;
+                }
+            }
+        });
+        return valid[0];
+    }
+
+}
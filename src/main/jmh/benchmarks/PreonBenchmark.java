@@ -0,0 +1,60 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import biz.c24.io.api.C24;
+import biz.c24.io.gettingstarted.customer.Customer;
+import biz.c24.io.gettingstarted.customer.CustomersFile;
+
+/**
+ * Conversion between CDOs and Preons, the cost of reading every Customer from each and of finding
+ * one Customer in a Preon by its ordinal
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PreonBenchmark {
+
+    @Benchmark
+    public biz.c24.io.gettingstarted.customer.preon.CustomersFile toPreon(CustomersState state) throws IOException {
+        return state.cdo.toPreon();
+    }
+
+    @Benchmark
+    public CustomersFile toCdo(CustomersState state) {
+        return C24.toCdo(state.preon);
+    }
+
+    @Benchmark
+    public int cdoGetCustomer(CustomersState state) {
+        int length = 0;
+        for(Customer customer : state.cdo.getCustomer()) {
+            length += customer.getCustomerNumber().length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int preonGetCustomer(CustomersState state) {
+        int length = 0;
+        for(biz.c24.io.gettingstarted.customer.preon.Customer customer : state.preon.getCustomer()) {
+            length += customer.getCustomerNumber().length();
+        }
+        return length;
+    }
+
+    /**
+     * A single lookup by ordinal. The Preon walks every record before it, so this is the cost of one
+     * iteration of preonGetCustomer, not of one Customer; reading them all this way would be quadratic.
+     */
+    @Benchmark
+    public int preonGetLastCustomerByOrdinal(CustomersState state) {
+        return state.preon.getCustomer(state.records - 1).getCustomerNumber().length();
+    }
+
+}
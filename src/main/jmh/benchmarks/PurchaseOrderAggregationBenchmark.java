@@ -0,0 +1,129 @@
+package benchmarks;
+
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.summingDouble;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import utils.PurchaseOrderGenerator;
+import biz.c24.io.api.C24;
+import biz.c24.io.gettingstarted.purchaseorder.CurrencyCodeJavaEnum;
+import biz.c24.io.gettingstarted.purchaseorder.Lineitem;
+import biz.c24.io.gettingstarted.purchaseorder.PurchaseorderDocumentRoot;
+import biz.c24.io.gettingstarted.purchaseorder.PurchaseorderLocal;
+import columnar.PurchaseOrderAggregates;
+import columnar.PurchaseOrderAggregates.DateField;
+import columnar.PurchaseOrderAggregates.ShippingTotals;
+import columnar.PurchaseOrderColumns;
+
+/**
+ * Revenue and shipping reports over many purchase orders: the Lineitem stream code from
+ * WorkingWithJava8Extensions against the columnar kernels, with and without the cost of extracting
+ * the columns.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PurchaseOrderAggregationBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Orders {
+
+        @Param({"1000", "100000"})
+        public int orders;
+
+        @Param({"10"})
+        public int lineItems;
+
+        public List<PurchaseorderLocal> cdos;
+        public List<biz.c24.io.gettingstarted.purchaseorder.preon.PurchaseorderLocal> preons;
+        public PurchaseOrderColumns columns;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            cdos = new ArrayList<>(orders);
+            preons = new ArrayList<>(orders);
+            for(int order = 0; order < orders; order++) {
+                StringWriter xml = new StringWriter();
+                PurchaseOrderGenerator.write(xml, order, lineItems);
+                PurchaseorderLocal purchaseOrder = C24.parse(PurchaseorderDocumentRoot.class).from(xml.toString()).getPurchaseorder();
+                cdos.add(purchaseOrder);
+                preons.add(purchaseOrder.toPreon());
+            }
+            columns = PurchaseOrderColumns.of(cdos);
+        }
+    }
+
+    @Benchmark
+    public Map<CurrencyCodeJavaEnum, Double> streamTotalsByCurrency(Orders state) {
+        return state.cdos.stream()
+            .flatMap(order -> order.getLineitems().stream())
+            .collect(groupingBy(Lineitem::getCurrencyEnum, summingDouble(item -> item.getPrice() * item.getQuantity())));
+    }
+
+    @Benchmark
+    public Map<CurrencyCodeJavaEnum, Double> parallelStreamTotalsByCurrency(Orders state) {
+        return state.cdos.parallelStream()
+            .flatMap(order -> order.getLineitems().stream())
+            .collect(groupingBy(Lineitem::getCurrencyEnum, summingDouble(item -> item.getPrice() * item.getQuantity())));
+    }
+
+    @Benchmark
+    public double[] columnarTotalsByCurrency(Orders state) {
+        return PurchaseOrderAggregates.totalsByCurrency(state.columns);
+    }
+
+    @Benchmark
+    public double[] extractAndTotalByCurrency(Orders state) {
+        return PurchaseOrderAggregates.totalsByCurrency(PurchaseOrderColumns.of(state.cdos));
+    }
+
+    @Benchmark
+    public double[] extractPreonsAndTotalByCurrency(Orders state) {
+        return PurchaseOrderAggregates.totalsByCurrency(PurchaseOrderColumns.ofPreons(state.preons));
+    }
+
+    @Benchmark
+    public Map<String, Double> streamShippingCostByShipper(Orders state) {
+        return state.cdos.stream()
+            .filter(order -> order.getShipper() != null)
+            .collect(groupingBy(order -> order.getShipper().getNameElement(), summingDouble(order ->
+                order.getShipper().getPerouncerate().doubleValue() * order.getLineitems().stream()
+                    .mapToDouble(item -> item.getPerunitounces().doubleValue() * item.getQuantity()).sum())));
+    }
+
+    @Benchmark
+    public ShippingTotals columnarShippingByShipper(Orders state) {
+        return PurchaseOrderAggregates.shippingByShipper(state.columns);
+    }
+
+    @Benchmark
+    public Map<YearMonth, Double> streamTotalsByPurchaseMonth(Orders state) {
+        return state.cdos.stream()
+            .collect(groupingBy(order -> YearMonth.from(order.getPurchasedate()), summingDouble(order ->
+                order.getLineitems().stream().mapToDouble(item -> item.getPrice() * item.getQuantity()).sum())));
+    }
+
+    @Benchmark
+    public SortedMap<YearMonth, double[]> columnarTotalsByPurchaseMonth(Orders state) {
+        return PurchaseOrderAggregates.totalsByMonth(state.columns, DateField.PURCHASE);
+    }
+
+}
@@ -0,0 +1,36 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import biz.c24.io.api.data.ValidationException;
+import biz.c24.io.gettingstarted.contact.ContactDetailsFile;
+import biz.c24.io.gettingstarted.transform.GenerateContactListTransform;
+
+/**
+ * GenerateContactListTransform through its 1:1 and n:m entry points
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class TransformBenchmark {
+
+    private final GenerateContactListTransform xform = new GenerateContactListTransform();
+
+    @Benchmark
+    public ContactDetailsFile transformOneToOne(CustomersState state) throws ValidationException {
+        return xform.transform(state.cdo);
+    }
+
+    @Benchmark
+    public Object[][] transformManyToMany(CustomersState state) throws ValidationException {
+        return xform.transform(new Object[][]{{state.cdo}});
+    }
+
+}
@@ -0,0 +1,32 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import biz.c24.io.api.C24;
+import biz.c24.io.api.data.ValidationEvent;
+import biz.c24.io.api.data.ValidationException;
+import biz.c24.io.gettingstarted.customer.CustomersFile;
+
+/**
+ * Fail-fast C24.validate against C24.validateFully over a valid file, where both do the same work
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ValidateBenchmark {
+
+    @Benchmark
+    public CustomersFile validate(CustomersState state) throws ValidationException {
+        return C24.validate(state.cdo);
+    }
+
+    @Benchmark
+    public ValidationEvent[] validateFully(CustomersState state) {
+        return C24.validateFully(state.cdo);
+    }
+
+}